@@ -0,0 +1,216 @@
+package com.example.android.pets;
+
+import android.app.Instrumentation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+import com.example.android.pets.data.TestShelterDatabase;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time of the frames drawn while the catalog is flung through 10k pets. The frame
+ * durations come from {@link FrameMetrics}, and their percentiles and the number of frames that
+ * missed a 60 fps deadline are written as JSON and reported to the instrumentation.
+ * <p>
+ * The pets are inserted into a test database the provider is pointed at, the pets of the shelter
+ * on the device are left untouched.
+ */
+@LargeTest
+@SdkSuppress(minSdkVersion = 24)
+@RunWith(AndroidJUnit4.class)
+public class CatalogFrameTimeBenchmark {
+
+    //Tag for log messages
+    private static final String LOG_TAG = CatalogFrameTimeBenchmark.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "shelter-frame-time.db";
+
+    private static final int PET_COUNT = 10000;
+
+    /** Number of flings down the list, each one waits for the list to stop */
+    private static final int FLINGS = 30;
+
+    private static final long FRAME_DEADLINE_NANOS = 16666667;
+
+    private static final long SCROLL_TIMEOUT_MILLIS = 10000;
+
+    /** Name of the file the results are written to, in the files directory of the app */
+    private static final String RESULTS_FILE_NAME = "catalog-frame-time.json";
+
+    @Rule
+    public final ActivityTestRule<CatalogActivity> activityRule =
+            new ActivityTestRule<>(CatalogActivity.class, false, false);
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+
+    private final List<Long> frameDurations = new ArrayList<>();
+
+    private TestShelterDatabase database;
+
+    @Before
+    public void insertPets() {
+        database = new TestShelterDatabase(InstrumentationRegistry.getTargetContext(), DATABASE_NAME);
+        database.open();
+        ContentValues[] pets = new ContentValues[PET_COUNT];
+        for (int i = 0; i < PET_COUNT; i++) {
+            ContentValues values = new ContentValues();
+            values.put(PetEntry.COLUMN_PET_NAME, "Pet " + i);
+            values.put(PetEntry.COLUMN_PET_BREED, i % 3 == 0 ? null : "Breed " + i % 7);
+            values.put(PetEntry.COLUMN_PET_GENDER, i % 3);
+            values.put(PetEntry.COLUMN_PET_WEIGHT, 1 + i % 50);
+            pets[i] = values;
+        }
+        ContentResolver contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        contentResolver.bulkInsert(PetEntry.CONTENT_URI, pets);
+    }
+
+    @After
+    public void closeDatabase() {
+        // The catalog must no longer read the test database once it is deleted
+        activityRule.finishActivity();
+        database.close();
+    }
+
+    @Test
+    public void flingThroughCatalog() throws Exception {
+        CatalogActivity activity = activityRule.launchActivity(null);
+        final RecyclerView recyclerView = activity.findViewById(R.id.petList);
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                return recyclerView.getAdapter().getItemCount() != 0;
+            }
+        });
+
+        HandlerThread metricsThread = new HandlerThread(LOG_TAG);
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener listener = new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+                if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1)
+                    return;
+                synchronized (frameDurations) {
+                    frameDurations.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+                }
+            }
+        };
+        activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+
+        try {
+            for (int i = 0; i < FLINGS; i++) {
+                instrumentation.runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        recyclerView.fling(0, recyclerView.getMaxFlingVelocity());
+                    }
+                });
+                waitFor(new Condition() {
+                    @Override
+                    public boolean isMet() {
+                        return recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE;
+                    }
+                });
+            }
+            instrumentation.waitForIdleSync();
+        } finally {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(listener);
+            metricsThread.quitSafely();
+        }
+
+        List<Long> durations;
+        synchronized (frameDurations) {
+            durations = new ArrayList<>(frameDurations);
+        }
+        assertTrue("No frame was drawn", !durations.isEmpty());
+        report(durations, recyclerView.getAdapter().getItemCount());
+    }
+
+    private void report(List<Long> durations, int petsListed) throws Exception {
+        Collections.sort(durations);
+        int jankyFrames = 0;
+        for (long duration : durations) {
+            if (duration > FRAME_DEADLINE_NANOS)
+                jankyFrames++;
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("benchmark", "catalogFling");
+        result.put("pets", PET_COUNT);
+        result.put("petsListed", petsListed);
+        result.put("frames", durations.size());
+        result.put("jankyFrames", jankyFrames);
+        result.put("frameTimeP50Millis", percentile(durations, 50) / 1e6);
+        result.put("frameTimeP90Millis", percentile(durations, 90) / 1e6);
+        result.put("frameTimeP99Millis", percentile(durations, 99) / 1e6);
+
+        File file = new File(InstrumentationRegistry.getTargetContext().getFilesDir(), RESULTS_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(result.toString(2));
+        }
+        Log.v(LOG_TAG, result.toString());
+
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, result.toString());
+        instrumentation.sendStatus(0, status);
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Waits until the condition, checked on the main thread, is met.
+     */
+    private void waitFor(final Condition condition) {
+        final boolean[] met = new boolean[1];
+        long deadline = SystemClock.elapsedRealtime() + SCROLL_TIMEOUT_MILLIS;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    met[0] = condition.isMet();
+                }
+            });
+            if (met[0])
+                return;
+            SystemClock.sleep(16);
+        }
+        throw new AssertionError("Timed out waiting for the catalog");
+    }
+}
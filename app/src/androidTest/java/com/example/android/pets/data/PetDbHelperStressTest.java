@@ -0,0 +1,244 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs several readers against a single writer on the database, once with the rollback journal
+ * and once with write-ahead logging, and reports the read latency percentiles of both modes.
+ * The readers and the writer go through a {@link PetProvider} on a database of its own, the way
+ * the catalog reads pages and the editor writes batches. The results are written as JSON and
+ * reported to the instrumentation.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class PetDbHelperStressTest {
+
+    //Tag for log messages
+    private static final String LOG_TAG = PetDbHelperStressTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "shelter-stress.db";
+
+    /** Name of the file the results are written to, in the files directory of the app */
+    private static final String RESULTS_FILE_NAME = "pets-stress.json";
+
+    private static final int PET_COUNT = 10000;
+
+    private static final int READERS = 4;
+
+    /** Pets inserted and updated by every write transaction */
+    private static final int WRITE_BATCH_SIZE = 50;
+
+    private static final long DURATION_MILLIS = 5000;
+
+    /** Number of pets read by every reader at once, as many as the catalog reads */
+    private static final int PAGE_SIZE = 50;
+
+    private static final String[] CATALOG_PROJECTION = {
+            PetEntry._ID,
+            PetEntry.COLUMN_PET_NAME,
+            PetEntry.COLUMN_PET_BREED
+    };
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+
+    @After
+    public void deleteDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void readLatencyWithOneWriter() throws Exception {
+        JSONArray results = new JSONArray();
+        results.put(run(false));
+        results.put(run(true));
+
+        File file = new File(context.getFilesDir(), RESULTS_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(results.toString(2));
+        }
+        Log.v(LOG_TAG, results.toString());
+
+        Bundle status = new Bundle();
+        status.putString(LOG_TAG, results.toString());
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    /**
+     * Runs the readers and the writer on a new database in the given journal mode, and returns
+     * the latencies of the reads.
+     */
+    private JSONObject run(boolean writeAheadLogging) throws Exception {
+        context.deleteDatabase(DATABASE_NAME);
+        final PetProvider provider = new PetProvider();
+        provider.attachInfo(context, null);
+        provider.setChangeNotifier(PetChangeNotifier.silent());
+        provider.setDbHelper(new PetDbHelper(context, DATABASE_NAME, writeAheadLogging));
+        try {
+            provider.bulkInsert(PetEntry.CONTENT_URI, newPets(new Random(42), PET_COUNT));
+
+            final AtomicBoolean stop = new AtomicBoolean();
+            final AtomicInteger writes = new AtomicInteger();
+            final List<long[]> readLatencies = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+
+            for (int i = 0; i < READERS; i++) {
+                final long seed = i;
+                final List<Long> latencies = new ArrayList<>();
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Random random = new Random(seed);
+                        while (!stop.get())
+                            latencies.add(read(provider, random));
+                        long[] samples = new long[latencies.size()];
+                        for (int j = 0; j < samples.length; j++)
+                            samples[j] = latencies.get(j);
+                        synchronized (readLatencies) {
+                            readLatencies.add(samples);
+                        }
+                    }
+                }, "reader-" + i);
+                threads.add(reader);
+            }
+
+            final AtomicReference<Exception> writeError = new AtomicReference<>();
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(-1);
+                    try {
+                        while (!stop.get()) {
+                            provider.applyBatch(newWrites(random));
+                            writes.incrementAndGet();
+                        }
+                    } catch (OperationApplicationException | RuntimeException e) {
+                        writeError.set(e);
+                    }
+                }
+            }, "writer"));
+
+            for (Thread thread : threads)
+                thread.start();
+            Thread.sleep(DURATION_MILLIS);
+            stop.set(true);
+            for (Thread thread : threads)
+                thread.join();
+
+            if (writeError.get() != null)
+                throw writeError.get();
+            long[] samples = merge(readLatencies);
+            assertTrue("No read was made", samples.length != 0);
+            Arrays.sort(samples);
+
+            JSONObject result = new JSONObject();
+            result.put("journalMode", writeAheadLogging ? "wal" : "rollback");
+            result.put("readers", READERS);
+            result.put("reads", samples.length);
+            result.put("writeTransactions", writes.get());
+            result.put("readP50Micros", percentile(samples, 50) / 1000);
+            result.put("readP99Micros", percentile(samples, 99) / 1000);
+            result.put("readMaxMicros", samples[samples.length - 1] / 1000);
+            return result;
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    /**
+     * Reads a random page of the catalog, the way the list does, and returns how long it took in
+     * nanoseconds.
+     */
+    private static long read(PetProvider provider, Random random) {
+        long start = System.nanoTime();
+        Cursor cursor = provider.query(PetEntry.buildPageUri(random.nextInt(PET_COUNT), PAGE_SIZE),
+                CATALOG_PROJECTION, null, null, null);
+        try {
+            while (cursor.moveToNext())
+                cursor.getString(1);
+        } finally {
+            cursor.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static ContentValues[] newPets(Random random, int count) {
+        ContentValues[] pets = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(PetEntry.COLUMN_PET_NAME, "Pet " + random.nextInt());
+            values.put(PetEntry.COLUMN_PET_BREED, "Breed " + random.nextInt(10));
+            values.put(PetEntry.COLUMN_PET_GENDER, random.nextInt(3));
+            values.put(PetEntry.COLUMN_PET_WEIGHT, 1 + random.nextInt(50));
+            pets[i] = values;
+        }
+        return pets;
+    }
+
+    /**
+     * Returns the operations of one write transaction: new pets, and renames of existing ones.
+     */
+    private static ArrayList<ContentProviderOperation> newWrites(Random random) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (ContentValues values : newPets(random, WRITE_BATCH_SIZE))
+            operations.add(ContentProviderOperation.newInsert(PetEntry.CONTENT_URI).withValues(values).build());
+        for (int i = 0; i < WRITE_BATCH_SIZE; i++) {
+            Uri uri = ContentUris.withAppendedId(PetEntry.CONTENT_URI, 1 + random.nextInt(PET_COUNT));
+            operations.add(ContentProviderOperation.newUpdate(uri)
+                    .withValue(PetEntry.COLUMN_PET_NAME, "Pet " + random.nextInt())
+                    .build());
+        }
+        return operations;
+    }
+
+    private static long[] merge(List<long[]> arrays) {
+        int length = 0;
+        for (long[] array : arrays)
+            length += array.length;
+        long[] merged = new long[length];
+        int offset = 0;
+        for (long[] array : arrays) {
+            System.arraycopy(array, 0, merged, offset, array.length);
+            offset += array.length;
+        }
+        return merged;
+    }
+
+    private static long percentile(long[] sortedValues, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.length) - 1;
+        return sortedValues[Math.max(0, Math.min(index, sortedValues.length - 1))];
+    }
+}
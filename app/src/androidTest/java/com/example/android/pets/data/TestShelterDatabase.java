@@ -0,0 +1,52 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderClient;
+import android.content.Context;
+
+/**
+ * Points the provider of the app at a database of its own for the length of a test, so that the
+ * activities under test list and write test pets and the pets of the shelter are never touched.
+ */
+public class TestShelterDatabase {
+
+    private final Context context;
+
+    private final String databaseName;
+
+    /**
+     * @param context      of the app under test
+     * @param databaseName of the test database, deleted when it is opened and closed
+     */
+    public TestShelterDatabase(Context context, String databaseName) {
+        this.context = context.getApplicationContext();
+        this.databaseName = databaseName;
+    }
+
+    /**
+     * Makes the provider read and write a new, empty test database.
+     */
+    public void open() {
+        context.deleteDatabase(databaseName);
+        getProvider().setDbHelper(new PetDbHelper(context, databaseName, true));
+    }
+
+    /**
+     * Makes the provider read and write the shelter database again, and deletes the test one.
+     */
+    public void close() {
+        getProvider().setDbHelper(new PetDbHelper(context));
+        context.deleteDatabase(databaseName);
+    }
+
+    private PetProvider getProvider() {
+        ContentProviderClient client = context.getContentResolver()
+                .acquireContentProviderClient(PetContract.CONTENT_AUTHORITY);
+        if (client == null)
+            throw new IllegalStateException("No provider for " + PetContract.CONTENT_AUTHORITY);
+        try {
+            return (PetProvider) client.getLocalContentProvider();
+        } finally {
+            client.release();
+        }
+    }
+}
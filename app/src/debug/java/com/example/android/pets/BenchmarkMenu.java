@@ -0,0 +1,65 @@
+package com.example.android.pets;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.Toast;
+
+import com.example.android.pets.data.PetBenchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Adds the "Run Benchmarks" option to the menu of the catalog. The benchmarks are a development
+ * tool and only exist in debug builds, release builds have a {@link BenchmarkMenu} that adds
+ * nothing.
+ */
+class BenchmarkMenu {
+
+    //Tag for log messages
+    private static final String LOG_TAG = BenchmarkMenu.class.getSimpleName();
+
+    private BenchmarkMenu() {
+    }
+
+    /**
+     * Adds the options of the benchmarks to the given menu.
+     */
+    static void inflate(Activity activity, Menu menu) {
+        activity.getMenuInflater().inflate(R.menu.menu_benchmarks, menu);
+    }
+
+    /**
+     * Handles a click on an option added by {@link #inflate(Activity, Menu)}, and returns
+     * whether it was one of them.
+     */
+    static boolean onOptionsItemSelected(Activity activity, MenuItem item) {
+        if (item.getItemId() != R.id.action_run_benchmarks)
+            return false;
+        runBenchmarks(activity.getApplicationContext());
+        return true;
+    }
+
+    /**
+     * Runs the benchmarks of the data layer in the background.
+     */
+    private static void runBenchmarks(final Context context) {
+        final Handler handler = new Handler();
+        new Thread(() -> {
+            String message;
+            try {
+                File file = PetBenchmark.run(context);
+                message = context.getString(R.string.benchmarks_finished, file.getPath());
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to run benchmarks", e);
+                message = context.getString(R.string.benchmarks_failed);
+            }
+            final String result = message;
+            handler.post(() -> Toast.makeText(context, result, Toast.LENGTH_LONG).show());
+        }).start();
+    }
+}
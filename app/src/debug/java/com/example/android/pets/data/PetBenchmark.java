@@ -0,0 +1,425 @@
+package com.example.android.pets.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.example.android.pets.data.PetContract.PetEntry;
+
+/**
+ * Benchmarks of the pets data layer. Every operation of {@link PetProvider} is measured on a
+ * table of 1k, 10k and 100k pets, in a separate database so the pets of the shelter are never
+ * touched. Each table size goes through warm-up rounds, which are not recorded, and then
+ * through several measured rounds. The throughput and allocations of each operation over the
+ * measured rounds are written as JSON so runs can be compared over time.
+ * <p>
+ * The provider is called directly rather than through a content resolver, so that only the
+ * provider and the database are measured, and its change notifications reach no observer.
+ * This takes minutes and must not run on the main thread. The same benchmarks run on the JVM
+ * as a Robolectric test, see {@code PetProviderBenchmark}. Like that test, this class only
+ * exists in debug builds.
+ */
+public class PetBenchmark {
+
+    //Tag for log messages
+    private static final String LOG_TAG = PetBenchmark.class.getSimpleName();
+
+    /** Name of the database file the benchmarks run on */
+    private static final String DATABASE_NAME = "shelter-benchmark.db";
+
+    /** Name of the file the results are written to, in the files directory of the app */
+    private static final String RESULTS_FILE_NAME = "pets-benchmark.json";
+
+    /** Number of pets in the table for each round of benchmarks */
+    static final int[] TABLE_SIZES = {1000, 10000, 100000};
+
+    /** Rounds run on each table size before the measured ones, to warm up the JIT and caches */
+    private static final int WARMUP_ROUNDS = 1;
+
+    /** Rounds recorded on each table size */
+    private static final int MEASURED_ROUNDS = 3;
+
+    /** Number of calls of the operations that touch a single pet */
+    private static final int SINGLE_OPERATIONS = 1000;
+
+    /** Number of calls of the filtered query */
+    private static final int FILTERED_QUERIES = 100;
+
+    private static final String[] NAMES = {"Max", "Maggie", "Marley", "Bella", "Buddy", "Bear", "Teddy", "Luna"};
+
+    private static final String[] BREEDS = {"Terrier", "Poodle", "Beagle", "Tabby", "Siamese", "Persian"};
+
+    /**
+     * Texts searched for: names, names and breeds, a breed only and a rarer name, so both the
+     * pets of the name and the ones that only match on their breed are read.
+     */
+    private static final String[] SEARCH_TEXTS = {"ma", "be", "ter", "max"};
+
+    /** Offsets of the pages of search results read for every text */
+    private static final int[] SEARCH_OFFSETS = {0, 5000};
+
+    /** Number of search results on a page, as many as the catalog reads at once */
+    private static final int SEARCH_PAGE_SIZE = 50;
+
+    private static final String[] CATALOG_PROJECTION = {
+            PetEntry._ID,
+            PetEntry.COLUMN_PET_NAME,
+            PetEntry.COLUMN_PET_BREED
+    };
+
+    /** One run of a benchmark */
+    private static class Measurement {
+        final int operations;
+        final long elapsedNanos;
+        final long allocatedBytes;
+
+        Measurement(int operations, long elapsedNanos, long allocatedBytes) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        double getOpsPerSecond() {
+            return operations * 1e9 / Math.max(elapsedNanos, 1);
+        }
+    }
+
+    private final PetProvider provider;
+
+    private final int warmupRounds;
+
+    private final int measuredRounds;
+
+    private final Random random = new Random(42);
+
+    /** Measured runs of every benchmark on the current table size, in the order they ran */
+    private final Map<String, List<Measurement>> measurements = new LinkedHashMap<>();
+
+    /** False during the warm-up rounds */
+    private boolean recording;
+
+    /**
+     * Constructs a new instance of {@link PetBenchmark}.
+     *
+     * @param provider       to measure, see {@link #createProvider(Context)}
+     * @param warmupRounds   rounds run on each table size before the measured ones
+     * @param measuredRounds rounds recorded on each table size
+     */
+    PetBenchmark(PetProvider provider, int warmupRounds, int measuredRounds) {
+        this.provider = provider;
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = measuredRounds;
+    }
+
+    /**
+     * Runs every benchmark and returns the file the results were written to.
+     */
+    public static File run(Context context) throws IOException {
+        context = context.getApplicationContext();
+        PetProvider provider = createProvider(context);
+        JSONObject report;
+        try {
+            report = new PetBenchmark(provider, WARMUP_ROUNDS, MEASURED_ROUNDS).run(TABLE_SIZES);
+        } catch (JSONException e) {
+            throw new IOException("Failed to build benchmark results", e);
+        } finally {
+            releaseProvider(context, provider);
+        }
+
+        File file = new File(context.getFilesDir(), RESULTS_FILE_NAME);
+        write(report, file);
+        return file;
+    }
+
+    /**
+     * Returns a provider on an empty database of its own. Its change notifications reach no
+     * observer, so the catalog does not reload while the benchmarks write.
+     */
+    static PetProvider createProvider(Context context) {
+        context.deleteDatabase(DATABASE_NAME);
+        PetProvider provider = new PetProvider();
+        provider.attachInfo(context, null);
+        provider.setChangeNotifier(PetChangeNotifier.silent());
+        provider.setDbHelper(new PetDbHelper(context, DATABASE_NAME, true));
+        return provider;
+    }
+
+    /**
+     * Shuts down a provider returned by {@link #createProvider(Context)} and deletes its
+     * database.
+     */
+    static void releaseProvider(Context context, PetProvider provider) {
+        provider.shutdown();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Writes the results returned by {@link #run(int[])} to the given file.
+     */
+    static void write(JSONObject report, File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(report.toString(2));
+        } catch (JSONException e) {
+            throw new IOException("Failed to write benchmark results", e);
+        }
+        Log.v(LOG_TAG, "Benchmark results written to " + file);
+    }
+
+    /**
+     * Runs every benchmark on each of the given table sizes and returns the results.
+     */
+    JSONObject run(int[] tableSizes) throws JSONException {
+        JSONArray results = new JSONArray();
+        for (int size : tableSizes) {
+            measurements.clear();
+            for (int round = 0; round < warmupRounds + measuredRounds; round++) {
+                recording = round >= warmupRounds;
+                runRound(size);
+            }
+            for (Map.Entry<String, List<Measurement>> entry : measurements.entrySet())
+                results.put(summarize(entry.getKey(), size, entry.getValue()));
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("warmupRounds", warmupRounds);
+        report.put("measuredRounds", measuredRounds);
+        report.put("results", results);
+        return report;
+    }
+
+    /**
+     * Measures every operation on a table of the given size. The table is filled by the bulk
+     * insert and emptied by the delete-all, the last benchmark of the round.
+     */
+    private void runRound(final int size) {
+        final ContentValues[] pets = new ContentValues[size];
+        for (int i = 0; i < size; i++)
+            pets[i] = newPet(i);
+        measure("bulkInsert", size, new Operation() {
+            @Override
+            public void run() {
+                provider.bulkInsert(PetEntry.CONTENT_URI, pets);
+            }
+        });
+
+        final long[] ids = readIds();
+
+        measure("singleInsert", SINGLE_OPERATIONS, new Operation() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SINGLE_OPERATIONS; i++)
+                    provider.insert(PetEntry.CONTENT_URI, newPet(i));
+            }
+        });
+
+        measure("queryAll", size + SINGLE_OPERATIONS, new Operation() {
+            @Override
+            public void run() {
+                Cursor cursor = provider.query(PetEntry.CONTENT_URI, CATALOG_PROJECTION, null, null, null);
+                readAll(cursor);
+            }
+        });
+
+        measure("queryById", SINGLE_OPERATIONS, new Operation() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SINGLE_OPERATIONS; i++) {
+                    long id = ids[random.nextInt(ids.length)];
+                    readAll(provider.query(ContentUris.withAppendedId(PetEntry.CONTENT_URI, id), null, null, null, null));
+                }
+            }
+        });
+
+        measure("filteredQuery", FILTERED_QUERIES, new Operation() {
+            @Override
+            public void run() {
+                String selection = PetEntry.COLUMN_PET_BREED + "=? AND " + PetEntry.COLUMN_PET_GENDER + "=? AND "
+                        + PetEntry.COLUMN_PET_WEIGHT + " BETWEEN ? AND ?";
+                for (int i = 0; i < FILTERED_QUERIES; i++) {
+                    int weight = 1 + random.nextInt(40);
+                    String[] selectionArgs = {
+                            BREEDS[random.nextInt(BREEDS.length)],
+                            String.valueOf(PetEntry.GENDER_MALE + random.nextInt(2)),
+                            String.valueOf(weight),
+                            String.valueOf(weight + 5)
+                    };
+                    readAll(provider.query(PetEntry.CONTENT_URI, CATALOG_PROJECTION, selection, selectionArgs, null));
+                }
+            }
+        });
+
+        measure("searchPage", SEARCH_TEXTS.length * SEARCH_OFFSETS.length, new Operation() {
+            @Override
+            public void run() {
+                for (String text : SEARCH_TEXTS) {
+                    for (int offset : SEARCH_OFFSETS) {
+                        Uri uri = PetEntry.buildSearchUri(text, offset, SEARCH_PAGE_SIZE);
+                        readAll(provider.query(uri, CATALOG_PROJECTION, null, null, null));
+                    }
+                }
+            }
+        });
+
+        measure("update", SINGLE_OPERATIONS, new Operation() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SINGLE_OPERATIONS; i++) {
+                    ContentValues values = new ContentValues();
+                    values.put(PetEntry.COLUMN_PET_WEIGHT, 1 + random.nextInt(50));
+                    long id = ids[random.nextInt(ids.length)];
+                    provider.update(ContentUris.withAppendedId(PetEntry.CONTENT_URI, id), values, null, null);
+                }
+            }
+        });
+
+        measure("deleteAll", size + SINGLE_OPERATIONS, new Operation() {
+            @Override
+            public void run() {
+                provider.delete(PetEntry.CONTENT_URI, null, null);
+            }
+        });
+    }
+
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Runs the operation once and, outside of the warm-up rounds, records its time and the bytes
+     * it allocated. The time is read from {@link System#nanoTime()}, which keeps running under
+     * Robolectric where the clock of {@link android.os.SystemClock} is frozen.
+     *
+     * @param name       of the benchmark
+     * @param operations number of pets or calls the operation handles, the throughput is per op
+     */
+    private void measure(String name, int operations, Operation operation) {
+        startAllocationCounting();
+        long start = System.nanoTime();
+        operation.run();
+        long elapsed = System.nanoTime() - start;
+        long allocatedBytes = stopAllocationCounting();
+        if (elapsed <= 0)
+            throw new IllegalStateException("The clock did not advance while running " + name);
+        if (!recording)
+            return;
+
+        Measurement measurement = new Measurement(operations, elapsed, allocatedBytes);
+        List<Measurement> runs = measurements.get(name);
+        if (runs == null) {
+            runs = new ArrayList<>();
+            measurements.put(name, runs);
+        }
+        runs.add(measurement);
+        Log.v(LOG_TAG, name + ": " + Math.round(measurement.getOpsPerSecond()) + " ops/sec, "
+                + allocatedBytes / operations + " bytes/op");
+    }
+
+    /**
+     * Returns the throughput of a benchmark over its measured rounds: overall, slowest, fastest
+     * and of every round, and the bytes it allocated per op.
+     */
+    private static JSONObject summarize(String name, int tableSize, List<Measurement> runs) throws JSONException {
+        long operations = 0;
+        long elapsed = 0;
+        long allocatedBytes = 0;
+        double minOpsPerSecond = Double.MAX_VALUE;
+        double maxOpsPerSecond = 0;
+        JSONArray rounds = new JSONArray();
+        for (Measurement run : runs) {
+            operations += run.operations;
+            elapsed += run.elapsedNanos;
+            allocatedBytes += run.allocatedBytes;
+            minOpsPerSecond = Math.min(minOpsPerSecond, run.getOpsPerSecond());
+            maxOpsPerSecond = Math.max(maxOpsPerSecond, run.getOpsPerSecond());
+            rounds.put(run.getOpsPerSecond());
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("benchmark", name);
+        result.put("tableSize", tableSize);
+        result.put("operationsPerRound", runs.get(0).operations);
+        result.put("opsPerSecond", operations * 1e9 / Math.max(elapsed, 1));
+        result.put("minOpsPerSecond", minOpsPerSecond);
+        result.put("maxOpsPerSecond", maxOpsPerSecond);
+        result.put("roundOpsPerSecond", rounds);
+        result.put("allocatedBytesPerOp", (double) allocatedBytes / operations);
+        return result;
+    }
+
+    /**
+     * Starts counting the bytes allocated by the current thread.
+     */
+    @SuppressWarnings("deprecation")
+    protected void startAllocationCounting() {
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+    }
+
+    /**
+     * Stops counting allocations and returns the bytes allocated by the current thread since
+     * {@link #startAllocationCounting()}.
+     */
+    @SuppressWarnings("deprecation")
+    protected long stopAllocationCounting() {
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocSize();
+    }
+
+    private ContentValues newPet(int index) {
+        ContentValues values = new ContentValues();
+        values.put(PetEntry.COLUMN_PET_NAME, NAMES[index % NAMES.length] + " " + index);
+        values.put(PetEntry.COLUMN_PET_BREED, BREEDS[random.nextInt(BREEDS.length)]);
+        values.put(PetEntry.COLUMN_PET_GENDER, random.nextInt(3));
+        values.put(PetEntry.COLUMN_PET_WEIGHT, 1 + random.nextInt(50));
+        return values;
+    }
+
+    private long[] readIds() {
+        Cursor cursor = provider.query(PetEntry.CONTENT_URI, new String[]{PetEntry._ID}, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++)
+                ids[i] = cursor.getLong(0);
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads every row of the cursor, so that the query is measured to its end, and closes it.
+     */
+    private static void readAll(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
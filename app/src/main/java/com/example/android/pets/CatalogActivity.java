@@ -16,33 +16,35 @@
 package com.example.android.pets;
 
 import android.app.AlertDialog;
-import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.Loader;
-import android.database.Cursor;
-import android.net.Uri;
+import android.database.ContentObserver;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.Toast;
 
 import com.example.android.pets.data.PetContract.PetEntry;
 import com.example.android.pets.data.PetDbHelper;
+import com.example.android.pets.data.PetWriteQueue;
 
 /**
  * Displays list of pets that were entered and stored in the app.
  */
-public class CatalogActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class CatalogActivity extends AppCompatActivity implements ListUpdateCallback,
+        PetCursorAdapter.OnPetClickListener {
 
     /**
      * Database helper that will provide us access to the database
@@ -51,7 +53,43 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
 
     private PetCursorAdapter cursorAdapter;
 
-    private static final int PET_LOADER = 0;
+    private View emptyView;
+
+    /**
+     * Pets shown in the list, read one page at a time as the list scrolls
+     */
+    private PetPageList pageList;
+
+    /**
+     * How long the search text must stay unchanged before it is searched for
+     */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
+    /**
+     * Shorter text matches too many pets to rank them quickly, so every pet is listed instead
+     */
+    private static final int SEARCH_MIN_LENGTH = 2;
+
+    private final Handler searchHandler = new Handler();
+
+    private String pendingSearchText;
+
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pageList.setSearchText(pendingSearchText);
+        }
+    };
+
+    /**
+     * Reads the list again whenever the pets change, redrawing only the rows that changed
+     */
+    private final ContentObserver petsObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            pageList.refresh();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,25 +107,31 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // and pass the context, which is the current activity.
         mDbHelper = new PetDbHelper(this);
 
-        ListView petsListView = findViewById(R.id.petList);
+        RecyclerView petsRecyclerView = findViewById(R.id.petList);
+        petsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        petsRecyclerView.setHasFixedSize(true);
 
-        View emptyView = findViewById(R.id.empty_view);
-        petsListView.setEmptyView(emptyView);
+        emptyView = findViewById(R.id.empty_view);
 
-        cursorAdapter = new PetCursorAdapter(this, null);
-        petsListView.setAdapter(cursorAdapter);
+        String[] projection = {
+                PetEntry._ID,
+                PetEntry.COLUMN_PET_NAME,
+                PetEntry.COLUMN_PET_BREED
+        };
+        pageList = new PetPageList(getContentResolver(), projection, this);
+        cursorAdapter = new PetCursorAdapter(pageList, this);
+        petsRecyclerView.setAdapter(cursorAdapter);
 
-        getLoaderManager().initLoader(PET_LOADER, null, this);
+        getContentResolver().registerContentObserver(PetEntry.CONTENT_URI, true, petsObserver);
+        pageList.reset();
+    }
 
-        petsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
-//                intent.putExtra("Uri", ContentUris.withAppendedId(PetEntry.CONTENT_URI, id).toString());
-                intent.setData(ContentUris.withAppendedId(PetEntry.CONTENT_URI,id));
-                startActivity(intent);
-            }
-        });
+    @Override
+    public void onPetClick(long id) {
+        Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
+//        intent.putExtra("Uri", ContentUris.withAppendedId(PetEntry.CONTENT_URI, id).toString());
+        intent.setData(ContentUris.withAppendedId(PetEntry.CONTENT_URI, id));
+        startActivity(intent);
     }
 
     /**
@@ -103,11 +147,13 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         values.put(PetEntry.COLUMN_PET_GENDER, PetEntry.GENDER_MALE);
         values.put(PetEntry.COLUMN_PET_WEIGHT, 7);
 
-        Uri uri = getContentResolver().insert(PetEntry.CONTENT_URI, values);
-        if (uri == null)
-            Toast.makeText(this, getString(R.string.editor_insert_pet_failed), Toast.LENGTH_SHORT).show();
-        else
-            Toast.makeText(this, getString(R.string.editor_insert_pet_successful), Toast.LENGTH_SHORT).show();
+        final Context context = getApplicationContext();
+        PetWriteQueue.getInstance(this).insert(PetEntry.CONTENT_URI, values, result -> {
+            if (result == null)
+                Toast.makeText(context, R.string.editor_insert_pet_failed, Toast.LENGTH_SHORT).show();
+            else
+                Toast.makeText(context, R.string.editor_insert_pet_successful, Toast.LENGTH_SHORT).show();
+        });
     }
 
     @Override
@@ -115,9 +161,37 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+        // The benchmarks are a development tool, only debug builds add them
+        BenchmarkMenu.inflate(this, menu);
+
+        // Search as the user types, once the text has settled. The search itself runs on the
+        // background thread of the page list.
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query, 0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText, SEARCH_DEBOUNCE_MILLIS);
+                return true;
+            }
+        });
         return true;
     }
 
+    private void search(String text, long delayMillis) {
+        searchHandler.removeCallbacks(searchRunnable);
+        pendingSearchText = text.trim();
+        if (pendingSearchText.length() < SEARCH_MIN_LENGTH)
+            pendingSearchText = null;
+        searchHandler.postDelayed(searchRunnable, delayMillis);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
@@ -131,39 +205,55 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
                 confirmDeleteAllDialog();
                 return true;
         }
+        if (BenchmarkMenu.onOptionsItemSelected(this, item))
+            return true;
         return super.onOptionsItemSelected(item);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = {
-                PetEntry._ID,
-                PetEntry.COLUMN_PET_NAME,
-                PetEntry.COLUMN_PET_BREED
-        };
-        return new CursorLoader(this, PetEntry.CONTENT_URI, projection, null, null, null);
+    public void onInserted(int position, int count) {
+        cursorAdapter.notifyItemRangeInserted(position, count);
+        updateEmptyView();
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    public void onRemoved(int position, int count) {
+        cursorAdapter.notifyItemRangeRemoved(position, count);
+        updateEmptyView();
+    }
 
-        cursorAdapter.swapCursor(data);
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        cursorAdapter.notifyItemMoved(fromPosition, toPosition);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onChanged(int position, int count, Object payload) {
+        cursorAdapter.notifyItemRangeChanged(position, count, payload);
+    }
 
-        cursorAdapter.swapCursor(null);
+    private void updateEmptyView() {
+        emptyView.setVisibility(pageList.getCount() == 0 ? View.VISIBLE : View.GONE);
+    }
 
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        getContentResolver().unregisterContentObserver(petsObserver);
+        pageList.close();
+        super.onDestroy();
     }
 
     private void deleteAllPet() {
-        int rowsDeleted = getContentResolver().delete(PetEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from pet database");
-        if(rowsDeleted==0)
-            Toast.makeText(this,R.string.editor_delete_pet_failed,Toast.LENGTH_SHORT).show();
-        else
-            Toast.makeText(this,R.string.editor_delete_pet_successful,Toast.LENGTH_SHORT).show();
+        final Context context = getApplicationContext();
+        PetWriteQueue.getInstance(this).delete(PetEntry.CONTENT_URI, result -> {
+            int rowsDeleted = result == null ? 0 : result.count;
+            Log.v("CatalogActivity", rowsDeleted + " rows deleted from pet database");
+            if(rowsDeleted==0)
+                Toast.makeText(context,R.string.editor_delete_pet_failed,Toast.LENGTH_SHORT).show();
+            else
+                Toast.makeText(context,R.string.editor_delete_pet_successful,Toast.LENGTH_SHORT).show();
+        });
     }
 
     private void confirmDeleteAllDialog() {
@@ -18,6 +18,7 @@ package com.example.android.pets;
 import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -40,6 +41,7 @@ import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.example.android.pets.data.PetContract.PetEntry;
+import com.example.android.pets.data.PetWriteQueue;
 
 /**
  * Allows user to create a new pet or edit an existing one.
@@ -212,18 +214,23 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             values.put(PetEntry.COLUMN_PET_WEIGHT, weight);
 
 
+            // The editor is closed right after saving, so the results are shown with the
+            // application context once the write queue has applied them
+            final Context context = getApplicationContext();
             if (currentPetUri == null) {
-                Uri uri = getContentResolver().insert(PetEntry.CONTENT_URI, values);
-                if (uri == null)
-                    Toast.makeText(this, getString(R.string.editor_insert_pet_failed), Toast.LENGTH_SHORT).show();
-                else
-                    Toast.makeText(this, getString(R.string.editor_insert_pet_successful), Toast.LENGTH_SHORT).show();
+                PetWriteQueue.getInstance(this).insert(PetEntry.CONTENT_URI, values, result -> {
+                    if (result == null)
+                        Toast.makeText(context, R.string.editor_insert_pet_failed, Toast.LENGTH_SHORT).show();
+                    else
+                        Toast.makeText(context, R.string.editor_insert_pet_successful, Toast.LENGTH_SHORT).show();
+                });
             } else {
-                int rowsUpdated = getContentResolver().update(currentPetUri, values, null, null);
-                if (rowsUpdated == 0)
-                    Toast.makeText(this, getString(R.string.editor_update_pet_failed), Toast.LENGTH_SHORT).show();
-                else
-                    Toast.makeText(this, getString(R.string.editor_update_pet_successful), Toast.LENGTH_SHORT).show();
+                PetWriteQueue.getInstance(this).update(currentPetUri, values, result -> {
+                    if (result == null || result.count == 0)
+                        Toast.makeText(context, R.string.editor_update_pet_failed, Toast.LENGTH_SHORT).show();
+                    else
+                        Toast.makeText(context, R.string.editor_update_pet_successful, Toast.LENGTH_SHORT).show();
+                });
             }
         }
     }
@@ -326,11 +333,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     }
 
     private void deletePet() {
-        int rowsDeleted = getContentResolver().delete(currentPetUri, null, null);
-        if (rowsDeleted == 0)
-            Toast.makeText(this, R.string.editor_delete_pet_failed, Toast.LENGTH_SHORT).show();
-        else
-            Toast.makeText(this, R.string.editor_delete_pet_successful, Toast.LENGTH_SHORT).show();
+        final Context context = getApplicationContext();
+        PetWriteQueue.getInstance(this).delete(currentPetUri, result -> {
+            if (result == null || result.count == 0)
+                Toast.makeText(context, R.string.editor_delete_pet_failed, Toast.LENGTH_SHORT).show();
+            else
+                Toast.makeText(context, R.string.editor_delete_pet_successful, Toast.LENGTH_SHORT).show();
+        });
     }
 
     private void confirmDeleteDialog() {
@@ -1,38 +1,110 @@
 package com.example.android.pets;
 
-import android.content.Context;
 import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.CursorAdapter;
 import android.widget.TextView;
 
 import com.example.android.pets.data.PetContract.PetEntry;
 
-public class PetCursorAdapter extends CursorAdapter {
+/**
+ * Binds the pets of a {@link PetPageList}. Rows whose page is still being read are shown empty
+ * and are bound again once the page arrives.
+ */
+public class PetCursorAdapter extends RecyclerView.Adapter<PetCursorAdapter.PetViewHolder> {
 
-    public PetCursorAdapter(Context context, Cursor cursor) {
-        super(context, cursor, true);
+    /**
+     * Callback notified when a pet of the list is clicked.
+     */
+    public interface OnPetClickListener {
+        void onPetClick(long id);
+    }
+
+    private final PetPageList pageList;
+
+    private final OnPetClickListener listener;
+
+    /** Cursor the column indexes below were resolved for */
+    private Cursor indexedCursor;
+
+    private int nameColumn;
+
+    private int breedColumn;
+
+    public PetCursorAdapter(PetPageList pageList, OnPetClickListener listener) {
+        this.pageList = pageList;
+        this.listener = listener;
+        setHasStableIds(true);
     }
 
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        return LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+    public int getItemCount() {
+        return pageList.getCount();
     }
 
+    /**
+     * Returns the ID of the pet, which the list keeps even for the pages it no longer holds.
+     */
     @Override
-    public void bindView(View view, Context context, Cursor cursor) {
+    public long getItemId(int position) {
+        return pageList.getId(position);
+    }
 
-        TextView nameTextView = view.findViewById(R.id.name);
-        TextView summaryTextView = view.findViewById(R.id.summary);
+    @Override
+    public PetViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        return new PetViewHolder(view);
+    }
 
-        nameTextView.setText(cursor.getString(cursor.getColumnIndex(PetEntry.COLUMN_PET_NAME)));
-        String breed = cursor.getString(cursor.getColumnIndex(PetEntry.COLUMN_PET_BREED));
+    @Override
+    public void onBindViewHolder(PetViewHolder holder, int position) {
+        Cursor cursor = pageList.getCursor(position);
+        if (cursor == null) {
+            holder.nameTextView.setText(null);
+            holder.summaryTextView.setText(null);
+            return;
+        }
+
+        // Every page has its own cursor, the lookups only run again when the page changes
+        if (cursor != indexedCursor) {
+            indexedCursor = cursor;
+            nameColumn = cursor.getColumnIndex(PetEntry.COLUMN_PET_NAME);
+            breedColumn = cursor.getColumnIndex(PetEntry.COLUMN_PET_BREED);
+        }
+
+        holder.nameTextView.setText(cursor.getString(nameColumn));
+        String breed = cursor.getString(breedColumn);
         if (TextUtils.isEmpty(breed))
-            summaryTextView.setText("Unknown Breed");
+            holder.summaryTextView.setText("Unknown Breed");
         else
-            summaryTextView.setText(breed);
+            holder.summaryTextView.setText(breed);
+    }
+
+    /**
+     * Holds the views of a row so they are only looked up when the row is created.
+     */
+    class PetViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        final TextView nameTextView;
+
+        final TextView summaryTextView;
+
+        PetViewHolder(View itemView) {
+            super(itemView);
+            nameTextView = itemView.findViewById(R.id.name);
+            summaryTextView = itemView.findViewById(R.id.summary);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View v) {
+            // The row is being removed from the list
+            if (getAdapterPosition() == RecyclerView.NO_POSITION)
+                return;
+            listener.onPetClick(getItemId());
+        }
     }
 }
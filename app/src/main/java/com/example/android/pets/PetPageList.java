@@ -0,0 +1,585 @@
+package com.example.android.pets;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the pets table one keyset page at a time, as the list scrolls down. Only the pages close
+ * to the one being displayed keep their cursor open. The pages around them keep the ID and a hash
+ * of every pet, about 12 bytes per pet, so a refresh can tell which rows changed. The pages
+ * further away only keep where they start and end and how many pets they hold, so the memory of
+ * a long list stays bounded, and get their IDs back when the list scrolls to them again.
+ * <p>
+ * Every change to the list is reported as a range of inserted, changed or removed positions, so
+ * the list only redraws the rows that actually changed.
+ * <p>
+ * All the methods must be called on the main thread, pages are read on a background thread.
+ */
+public class PetPageList {
+
+    //Tag for log messages
+    private static final String LOG_TAG = PetPageList.class.getSimpleName();
+
+    /** Number of pets read in a single query */
+    static final int PAGE_SIZE = 50;
+
+    /**
+     * Pages further than this from the one being displayed have their cursor closed. A refresh
+     * reads again the pages up to this distance and drops the ones after them.
+     */
+    private static final int MAX_PAGE_DISTANCE = 2;
+
+    /** Pages further than this from the one being displayed drop the IDs and hashes of their pets */
+    private static final int MAX_IDS_PAGE_DISTANCE = 20;
+
+    private static final long[] NO_IDS = new long[0];
+
+    private static final int[] NO_HASHES = new int[0];
+
+    /**
+     * A page of pets. Every page except the last one holds exactly {@link #PAGE_SIZE} pets, so
+     * the page of a position is simply {@code position / PAGE_SIZE}.
+     * <p>
+     * The arrays are replaced rather than modified, so a background thread can compare them
+     * with the ones of a newer page while the main thread goes on.
+     */
+    private static class Page {
+        /** ID of the last pet of the previous page, 0 for the first page */
+        final long afterId;
+        /** Number of pets of the page, 0 until the page has been read */
+        int count;
+        /** ID of the last pet of the page */
+        long lastId;
+        /** Hash of the IDs of the page, to tell whether the page holds the same pets when read again */
+        int idsHash;
+        /** IDs of the pets of the page, empty until the page has been read, null once dropped */
+        long[] ids = NO_IDS;
+        /** Hash of the columns of every pet, to tell a changed pet from an unchanged one */
+        int[] contentHashes = NO_HASHES;
+        Cursor cursor;
+        boolean loading;
+
+        Page(long afterId) {
+            this.afterId = afterId;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the ID of the last pet of this page, the next page starts after it.
+         */
+        long getLastId() {
+            return count == 0 ? afterId : lastId;
+        }
+
+        /**
+         * Returns whether the given page, read again from the same place, holds the same pets.
+         */
+        boolean holdsSamePets(Page read) {
+            return ids != null
+                    ? Arrays.equals(ids, read.ids)
+                    : count == read.count && idsHash == read.idsHash;
+        }
+
+        /**
+         * Takes the cursor, the IDs and the hashes of the given page, read from the same place.
+         */
+        void take(Page read) {
+            cursor = read.cursor;
+            count = read.count;
+            lastId = read.lastId;
+            idsHash = read.idsHash;
+            ids = read.ids;
+            contentHashes = read.contentHashes;
+        }
+
+        /**
+         * Takes the given cursor, and reads the ID and the hash of every pet it holds.
+         */
+        void read(Cursor cursor) {
+            this.cursor = cursor;
+            int idColumn = cursor.getColumnIndexOrThrow(PetEntry._ID);
+            long[] ids = new long[cursor.getCount()];
+            int[] contentHashes = new int[ids.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(idColumn);
+                int hash = 0;
+                for (int column = 0; column < cursor.getColumnCount(); column++) {
+                    String value = cursor.getString(column);
+                    hash = 31 * hash + (value == null ? 0 : value.hashCode());
+                }
+                contentHashes[i] = hash;
+            }
+            this.ids = ids;
+            this.contentHashes = contentHashes;
+            count = ids.length;
+            lastId = count == 0 ? afterId : ids[count - 1];
+            idsHash = Arrays.hashCode(ids);
+        }
+
+        /**
+         * Closes the cursor and drops the IDs and hashes, the page is read again when needed.
+         */
+        void drop() {
+            close();
+            ids = null;
+            contentHashes = null;
+        }
+
+        void close() {
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+
+    private final ContentResolver contentResolver;
+
+    private final String[] projection;
+
+    private final ListUpdateCallback callback;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private List<Page> pages = new ArrayList<>();
+
+    private int count = 0;
+
+    private boolean endReached = false;
+
+    /** Page of the last position read, far pages are only released when it changes */
+    private int currentPage = 0;
+
+    /** Text searched for, or null to list every pet */
+    private String searchText;
+
+    /** Incremented on every reset or refresh so that results for older data are dropped */
+    private int generation = 0;
+
+    /** Incremented whenever a page is added, so a refresh computed before is dropped */
+    private int pagesAdded = 0;
+
+    public PetPageList(ContentResolver contentResolver, String[] projection, ListUpdateCallback callback) {
+        this.contentResolver = contentResolver;
+        this.projection = projection;
+        this.callback = callback;
+    }
+
+    /**
+     * Returns the number of pets read so far. It grows as the list scrolls down.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a cursor moved to the given position, or null if its page is still being read or
+     * is being read again because it changed.
+     * Reading the last page in memory starts reading the next one.
+     */
+    public Cursor getCursor(int position) {
+        int pageIndex = position / PAGE_SIZE;
+        Page page = pages.get(pageIndex);
+
+        if (pageIndex == pages.size() - 1 && !endReached)
+            loadPage(pages.size());
+        if (pageIndex != currentPage) {
+            currentPage = pageIndex;
+            releaseFarPages(pages, pageIndex);
+        }
+
+        if (page.cursor == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        if (!page.cursor.moveToPosition(position % PAGE_SIZE))
+            return null;
+        return page.cursor;
+    }
+
+    /**
+     * Returns the ID of the pet at the given position. It is known even when the cursor of its
+     * page has been closed. Far from the displayed page the IDs are dropped, and until the page
+     * is read again its positions get a negative ID of their own, which no pet has.
+     */
+    public long getId(int position) {
+        if (pages.get(position / PAGE_SIZE).ids == null)
+            return -1 - position;
+        return getId(pages, position);
+    }
+
+    /**
+     * Lists the matches of a full-text search for the given text, best matches first, or every
+     * pet again when the text is empty. Matches are read one page at a time as well.
+     */
+    public void setSearchText(String text) {
+        searchText = TextUtils.isEmpty(text) ? null : text;
+        reset();
+    }
+
+    /**
+     * Drops every page and reads the first one again.
+     */
+    public void reset() {
+        generation++;
+        closePages(pages);
+        int oldCount = count;
+        pages = new ArrayList<>();
+        count = 0;
+        endReached = false;
+        currentPage = 0;
+        if (oldCount != 0)
+            callback.onRemoved(0, oldCount);
+        loadPage(0);
+    }
+
+    /**
+     * Reads again the pages around the one being displayed, for instance after the pets have
+     * changed, and reports the rows that differ from the ones already displayed. The pages are
+     * read from where they started, and the pages after them are dropped to be read again as
+     * the list scrolls down.
+     * <p>
+     * The pages before them are kept. If they no longer hold the same number of pets, the
+     * positions would not line up any more and the list is reset instead.
+     */
+    public void refresh() {
+        if (pages.isEmpty() || pages.get(0).getCount() == 0) {
+            reset();
+            return;
+        }
+
+        final int refreshGeneration = ++generation;
+        final int refreshPagesAdded = pagesAdded;
+        int displayedPage = Math.min(currentPage, pages.size() - 1);
+        final int first = Math.max(displayedPage - MAX_PAGE_DISTANCE, 0);
+        final int pageCount = Math.min(displayedPage + MAX_PAGE_DISTANCE, pages.size() - 1) - first + 1;
+        final String text = searchText;
+        // Search results are ranked, the matches before the first page cannot be counted by ID
+        if (first != 0 && text != null) {
+            reset();
+            return;
+        }
+
+        final List<Page> oldPages = new ArrayList<>(pages.subList(first, first + pageCount));
+        final long afterId = oldPages.get(0).afterId;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (first != 0 && countPetsUpTo(afterId) != first * PAGE_SIZE) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (refreshGeneration == generation)
+                                reset();
+                        }
+                    });
+                    return;
+                }
+
+                final List<Page> newPages = new ArrayList<>();
+                boolean end = false;
+                long pageAfterId = afterId;
+                while (newPages.size() < pageCount) {
+                    Page page = readPage(text, pageAfterId, first + newPages.size());
+                    if (page == null) {
+                        closePages(newPages);
+                        return;
+                    }
+                    if (page.getCount() == 0) {
+                        page.close();
+                        end = true;
+                        break;
+                    }
+                    newPages.add(page);
+                    pageAfterId = page.getLastId();
+                    if (page.getCount() < PAGE_SIZE) {
+                        end = true;
+                        break;
+                    }
+                }
+
+                // Only the IDs and hashes are compared, so this does not touch the old cursors
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new PageDiffCallback(oldPages, newPages), false);
+                final boolean endOfPets = end;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRefreshed(refreshGeneration, refreshPagesAdded, first, countOf(oldPages),
+                                newPages, endOfPets, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Closes every open cursor and stops reading pages.
+     */
+    public void close() {
+        generation++;
+        closePages(pages);
+        pages = new ArrayList<>();
+        count = 0;
+        executor.shutdownNow();
+    }
+
+    private void onRefreshed(int refreshGeneration, int refreshPagesAdded, int first, int oldCount,
+                             List<Page> newPages, boolean end, DiffUtil.DiffResult diff) {
+        if (refreshGeneration != generation) {
+            closePages(newPages);
+            return;
+        }
+        // A page read before the refresh arrived after it started, the difference no longer
+        // matches the list
+        if (refreshPagesAdded != pagesAdded) {
+            closePages(newPages);
+            refresh();
+            return;
+        }
+
+        int start = first * PAGE_SIZE;
+        int newCount = countOf(newPages);
+        int droppedCount = count - start - oldCount;
+        List<Page> replacedPages = pages.subList(first, pages.size());
+        closePages(replacedPages);
+        replacedPages.clear();
+        pages.addAll(newPages);
+        count = start + newCount;
+        endReached = end;
+        releaseFarPages(pages, currentPage);
+        Log.v(LOG_TAG, "Refreshed " + newPages.size() + " pages from page " + first + " (" + count + " in list)");
+
+        diff.dispatchUpdatesTo(new OffsetCallback(callback, start));
+        if (droppedCount != 0)
+            callback.onRemoved(start + newCount, droppedCount);
+    }
+
+    private void loadPage(final int pageIndex) {
+        final Page page;
+        if (pageIndex == pages.size()) {
+            long afterId = pageIndex == 0 ? 0 : pages.get(pageIndex - 1).getLastId();
+            page = new Page(afterId);
+            pages.add(page);
+        } else {
+            page = pages.get(pageIndex);
+        }
+        if (page.loading)
+            return;
+        page.loading = true;
+
+        final String text = searchText;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page read = readPage(text, page.afterId, pageIndex);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(page, read);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(Page page, Page read) {
+        page.loading = false;
+        int pageIndex = pages.indexOf(page);
+        // The page was dropped by a reset or refresh while it was being read
+        if (pageIndex == -1 || read == null) {
+            if (read != null)
+                read.close();
+            return;
+        }
+
+        int start = pageIndex * PAGE_SIZE;
+        if (page.getCount() != 0) {
+            // An evicted page read again, its rows were displayed empty until now. If pets were
+            // deleted or added since it was first read its positions no longer line up with
+            // the rows, so the list is refreshed instead.
+            if (!page.holdsSamePets(read)) {
+                read.close();
+                refresh();
+                return;
+            }
+            page.take(read);
+            callback.onChanged(start, page.getCount(), null);
+            return;
+        }
+
+        page.take(read);
+        count += page.getCount();
+        pagesAdded++;
+        if (page.getCount() < PAGE_SIZE) {
+            endReached = true;
+            if (page.getCount() == 0) {
+                page.close();
+                pages.remove(page);
+            }
+        }
+        Log.v(LOG_TAG, "Read page after " + page.afterId + " (" + page.getCount() + " pets, " + count + " in list)");
+        if (page.getCount() != 0)
+            callback.onInserted(start, page.getCount());
+    }
+
+    /**
+     * Reads a page on the background thread, or returns null if the query failed.
+     */
+    private Page readPage(String text, long afterId, int pageIndex) {
+        Cursor cursor = contentResolver.query(pageUri(text, afterId, pageIndex), projection, null, null, null);
+        if (cursor == null)
+            return null;
+        Page page = new Page(afterId);
+        page.read(cursor);
+        return page;
+    }
+
+    /**
+     * Returns the number of pets whose ID is at most the given one, which is the number of pets
+     * in the pages before the page that starts after this ID.
+     */
+    private int countPetsUpTo(long id) {
+        Cursor cursor = contentResolver.query(PetEntry.CONTENT_URI, new String[]{"count(*)"},
+                PetEntry._ID + "<=?", new String[]{String.valueOf(id)}, null);
+        if (cursor == null)
+            return -1;
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the uri of a page. Pets are read after the last ID of the previous page, search
+     * results are ranked rather than ordered by ID so they are read at the offset of the page.
+     */
+    private static Uri pageUri(String searchText, long afterId, int pageIndex) {
+        return searchText == null
+                ? PetEntry.buildPageUri(afterId, PAGE_SIZE)
+                : PetEntry.buildSearchUri(searchText, pageIndex * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    private static long getId(List<Page> pages, int position) {
+        return pages.get(position / PAGE_SIZE).ids[position % PAGE_SIZE];
+    }
+
+    private static int getContentHash(List<Page> pages, int position) {
+        return pages.get(position / PAGE_SIZE).contentHashes[position % PAGE_SIZE];
+    }
+
+    private static int countOf(List<Page> pages) {
+        int count = 0;
+        for (Page page : pages)
+            count += page.getCount();
+        return count;
+    }
+
+    private static void releaseFarPages(List<Page> pages, int pageIndex) {
+        for (int i = 0; i < pages.size(); i++) {
+            int distance = Math.abs(i - pageIndex);
+            if (distance > MAX_IDS_PAGE_DISTANCE)
+                pages.get(i).drop();
+            else if (distance > MAX_PAGE_DISTANCE)
+                pages.get(i).close();
+        }
+    }
+
+    private static void closePages(List<Page> pages) {
+        for (Page page : pages)
+            page.close();
+    }
+
+    /**
+     * Compares the rows of the pages before and after a refresh by pet ID, and their content by
+     * hash. It only reads arrays, so it runs on the background thread.
+     */
+    private static class PageDiffCallback extends DiffUtil.Callback {
+
+        private final List<Page> oldPages;
+        private final int oldCount;
+        private final List<Page> newPages;
+        private final int newCount;
+
+        PageDiffCallback(List<Page> oldPages, List<Page> newPages) {
+            this.oldPages = oldPages;
+            this.oldCount = countOf(oldPages);
+            this.newPages = newPages;
+            this.newCount = countOf(newPages);
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldCount;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newCount;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return getId(oldPages, oldItemPosition) == getId(newPages, newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return getContentHash(oldPages, oldItemPosition) == getContentHash(newPages, newItemPosition);
+        }
+    }
+
+    /**
+     * Reports the updates of a range of the list that starts at the given position.
+     */
+    private static class OffsetCallback implements ListUpdateCallback {
+
+        private final ListUpdateCallback callback;
+        private final int offset;
+
+        OffsetCallback(ListUpdateCallback callback, int offset) {
+            this.callback = callback;
+            this.offset = offset;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            callback.onInserted(offset + position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            callback.onRemoved(offset + position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            callback.onMoved(offset + fromPosition, offset + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            callback.onChanged(offset + position, count, payload);
+        }
+    }
+}
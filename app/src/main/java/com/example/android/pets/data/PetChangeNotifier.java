@@ -0,0 +1,182 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.android.pets.data.PetContract.PetEntry;
+
+/**
+ * Coalesces the change notifications of {@link PetProvider}. Uris are collected over a short
+ * window (or until {@link #flush()} is called at the end of a transaction) and each distinct
+ * uri is then notified once. When too many single pet uris pile up they are replaced by
+ * {@link PetEntry#CONTENT_URI}, which also reaches the observers of every single pet.
+ */
+public class PetChangeNotifier {
+
+    //Tag for log messages
+    private static final String LOG_TAG = PetChangeNotifier.class.getSimpleName();
+
+    private final ContentResolver contentResolver;
+
+    private final long windowMillis;
+
+    private final int maxItemUris;
+
+    private final Handler handler;
+
+    /** Uris waiting to be notified, in the order they were first changed */
+    private final Set<Uri> pendingUris = new LinkedHashSet<>();
+
+    private boolean flushScheduled = false;
+
+    private final AtomicLong notificationsReceived = new AtomicLong();
+
+    private final AtomicLong notificationsSent = new AtomicLong();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructs a new instance of {@link PetChangeNotifier}.
+     *
+     * @param contentResolver used to send the notifications
+     * @param windowMillis    how long changes are collected before they are notified
+     * @param maxItemUris     number of single pet uris after which they are promoted to the
+     *                        list uri
+     */
+    public PetChangeNotifier(ContentResolver contentResolver, long windowMillis, int maxItemUris) {
+        this.contentResolver = contentResolver;
+        this.windowMillis = windowMillis;
+        this.maxItemUris = maxItemUris;
+
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    private PetChangeNotifier() {
+        contentResolver = null;
+        windowMillis = 0;
+        maxItemUris = 0;
+        handler = null;
+    }
+
+    /**
+     * Returns a notifier that only counts the changes reported to it and never notifies any
+     * observer, for a provider whose writes must not reach the app, such as the one of the
+     * benchmarks of debug builds.
+     */
+    @VisibleForTesting
+    public static PetChangeNotifier silent() {
+        return new PetChangeNotifier();
+    }
+
+    /**
+     * Records a change to the given uri. Observers are notified once the window has passed.
+     */
+    public void notifyChange(Uri uri) {
+        notificationsReceived.incrementAndGet();
+        if (handler == null)
+            return;
+        synchronized (pendingUris) {
+            pendingUris.add(uri);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flushRunnable, windowMillis);
+            }
+        }
+    }
+
+    /**
+     * Notifies every pending uri right away, for instance once a transaction has been committed.
+     */
+    public void flush() {
+        if (handler == null)
+            return;
+        List<Uri> uris;
+        synchronized (pendingUris) {
+            handler.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+            if (pendingUris.isEmpty())
+                return;
+            uris = coalesce(pendingUris);
+            pendingUris.clear();
+        }
+
+        for (Uri uri : uris)
+            contentResolver.notifyChange(uri, null);
+        long sent = notificationsSent.addAndGet(uris.size());
+        Log.v(LOG_TAG, "Sent " + sent + " of " + notificationsReceived.get() + " change notifications");
+    }
+
+    /**
+     * Sends the pending notifications and stops the notifier thread.
+     */
+    public void quit() {
+        flush();
+        if (handler != null)
+            handler.getLooper().quitSafely();
+    }
+
+    /**
+     * Drops the single pet uris that are already covered by the list uri, and promotes them to
+     * the list uri when there are more than {@link #maxItemUris} of them.
+     */
+    private List<Uri> coalesce(Set<Uri> uris) {
+        int itemUris = 0;
+        for (Uri uri : uris) {
+            if (isItemUri(uri))
+                itemUris++;
+        }
+
+        if (itemUris > maxItemUris)
+            uris.add(PetEntry.CONTENT_URI);
+
+        if (uris.contains(PetEntry.CONTENT_URI)) {
+            Iterator<Uri> iterator = uris.iterator();
+            while (iterator.hasNext()) {
+                if (isItemUri(iterator.next()))
+                    iterator.remove();
+            }
+        }
+        return new ArrayList<>(uris);
+    }
+
+    private static boolean isItemUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2
+                && PetEntry.CONTENT_URI.getAuthority().equals(uri.getAuthority())
+                && PetContract.PATH_PETS.equals(segments.get(0))
+                && TextUtils.isDigitsOnly(segments.get(1));
+    }
+
+    /**
+     * Returns the number of changes reported to this notifier.
+     */
+    public long getNotificationsReceived() {
+        return notificationsReceived.get();
+    }
+
+    /**
+     * Returns the number of notifications actually sent to the content resolver.
+     */
+    public long getNotificationsSent() {
+        return notificationsSent.get();
+    }
+}
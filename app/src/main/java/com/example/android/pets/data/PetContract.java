@@ -46,6 +46,13 @@ public final class PetContract {
      */
     public static final String PATH_PETS = "pets";
 
+    /**
+     * Path appended to the pets path for full-text searches, followed by the search text.
+     * For instance, content://com.example.android.pets/pets/search/ter finds the pets whose
+     * name or breed has a word starting with "ter".
+     */
+    public static final String PATH_SEARCH = "search";
+
 
     // To prevent someone from accidentally instantiating the contract class,
     // give it an empty constructor.
@@ -63,11 +70,31 @@ public final class PetContract {
          */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PETS);
 
+        /**
+         * Query parameters for reading the {@link #CONTENT_URI} one page at a time. Pages are
+         * ordered by {@link #_ID}: a page holds at most {@link #QUERY_PARAMETER_LIMIT} pets whose
+         * ID is greater than {@link #QUERY_PARAMETER_AFTER_ID}.
+         */
+        public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Query parameter for reading search results one page at a time. They are ranked rather
+         * than ordered by ID, so a page skips the {@link #QUERY_PARAMETER_OFFSET} best matches.
+         */
+        public static final String QUERY_PARAMETER_OFFSET = "offset";
+
         /**
          * Name of database table for pets
          */
         public final static String TABLE_NAME = "pets";
 
+        /**
+         * Name of the full-text search table that indexes the name and breed of the pets
+         * (added in database version 3). It is kept in sync with {@link #TABLE_NAME} by triggers.
+         */
+        public final static String FTS_TABLE_NAME = "pets_fts";
+
         /**
          * Unique ID number for the pet (only for use in the database table).
          * <p>
@@ -106,6 +133,14 @@ public final class PetContract {
          */
         public final static String COLUMN_PET_WEIGHT = "weight";
 
+        /**
+         * Names of the secondary indexes on the pets table (added in database version 2).
+         */
+        public final static String INDEX_NAME = "pets_name_idx";
+        public final static String INDEX_BREED = "pets_breed_idx";
+        public final static String INDEX_GENDER_WEIGHT = "pets_gender_weight_idx";
+        public final static String INDEX_WEIGHT = "pets_weight_idx";
+
         /**
          * Possible values for the gender of the pet.
          */
@@ -124,6 +159,31 @@ public final class PetContract {
         public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PETS;
 
 
+        /**
+         * Returns the uri of the page of at most {@code limit} pets that follow the pet with the
+         * given ID. Use 0 as {@code afterId} for the first page.
+         */
+        public static Uri buildPageUri(long afterId, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Returns the uri searching for the pets whose name or breed has words starting with
+         * the words of the given text, best matches first. The uri holds at most {@code limit}
+         * matches, after skipping the {@code offset} best ones.
+         */
+        public static Uri buildSearchUri(String text, int offset, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_SEARCH)
+                    .appendPath(text)
+                    .appendQueryParameter(QUERY_PARAMETER_OFFSET, String.valueOf(offset))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
         public static final boolean isValidGender(int gender) {
             if (gender == GENDER_UNKNOWN || gender == GENDER_MALE || gender == GENDER_FEMALE) {
                 return true;
@@ -18,6 +18,7 @@ package com.example.android.pets.data;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.VisibleForTesting;
 
 import com.example.android.pets.data.PetContract.PetEntry;
 
@@ -32,24 +33,123 @@ public class PetDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "shelter.db";
 
     /**
-     * Database version. If you change the database schema, you must increment the database version.
+     * Database version. If you change the database schema, you must increment the database version
+     * and add a matching step to {@link #migrate(SQLiteDatabase, int)}.
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 3;
 
     /**
-     * Constructs a new instance of {@link PetDbHelper}.
+     * Number of compiled statements each connection keeps, enough for every statement the
+     * provider runs.
+     */
+    private static final int STATEMENT_CACHE_SIZE = 50;
+
+    /**
+     * Synchronous level with write-ahead logging. A commit only appends to the log, which stays
+     * durable across application crashes, and the log is only synced when it is checkpointed.
+     */
+    private static final String SYNCHRONOUS_WAL = "NORMAL";
+
+    /**
+     * Synchronous level with the rollback journal, which needs every commit synced to be safe.
+     */
+    private static final String SYNCHRONOUS_ROLLBACK_JOURNAL = "FULL";
+
+    private final boolean writeAheadLogging;
+
+    /**
+     * Constructs a new instance of {@link PetDbHelper} that uses write-ahead logging.
      *
      * @param context of the app
      */
     public PetDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, true);
     }
 
     /**
-     * This is called when the database is created for the first time.
+     * Constructs a new instance of {@link PetDbHelper}.
+     * <p>
+     * With write-ahead logging the database keeps a pool of read connections, so queries run in
+     * parallel with each other and with the single writer instead of waiting for it. Without it
+     * the database uses the rollback journal, where a write blocks every read.
+     *
+     * @param context           of the app
+     * @param writeAheadLogging whether the database uses write-ahead logging
+     */
+    public PetDbHelper(Context context, boolean writeAheadLogging) {
+        this(context, DATABASE_NAME, writeAheadLogging);
+    }
+
+    /**
+     * Constructs a new instance of {@link PetDbHelper} on another database file, for instance to
+     * run tests and benchmarks without touching the pets of the shelter.
+     */
+    @VisibleForTesting
+    PetDbHelper(Context context, String databaseName, boolean writeAheadLogging) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        this.writeAheadLogging = writeAheadLogging;
+        setWriteAheadLoggingEnabled(writeAheadLogging);
+    }
+
+    /**
+     * This is called when the database connection is being configured, before it is created
+     * or upgraded. Pragmas run here only reach the primary connection, which does the writes:
+     * the read connections of the write-ahead logging pool keep the SQLite defaults, such as
+     * its page cache. The statement cache size is kept by the database and applies to every
+     * connection.
+     * <p>
+     * The synchronous level follows the journal mode and is deliberately not configurable: it is
+     * the lowest level with which a power loss cannot corrupt the database in that mode.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setMaxSqlCacheSize(STATEMENT_CACHE_SIZE);
+        db.execSQL("PRAGMA synchronous = "
+                + (writeAheadLogging ? SYNCHRONOUS_WAL : SYNCHRONOUS_ROLLBACK_JOURNAL));
+    }
+
+    /**
+     * This is called when the database is created for the first time. The version 1 schema is
+     * created and then brought up to date by the same migration steps an upgrade goes through,
+     * so new and upgraded installs always end up with the same schema.
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createVersion1(db);
+        onUpgrade(db, 1, DATABASE_VERSION);
+    }
+
+    /**
+     * This is called when the database needs to be upgraded. Every migration step between the
+     * old and the new version is applied in order, in place, inside the upgrade transaction.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrate(db, version);
+        }
+    }
+
+    /**
+     * Applies the single migration step that brings the database to the given version.
+     */
+    static void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                upgradeToVersion2(db);
+                break;
+            case 3:
+                upgradeToVersion3(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Creates the pets table as it was in version 1 of the database.
+     */
+    static void createVersion1(SQLiteDatabase db) {
         // Create a String that contains the SQL statement to create the pets table
         String SQL_CREATE_PETS_TABLE =  "CREATE TABLE " + PetEntry.TABLE_NAME + " ("
                 + PetEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -63,10 +163,49 @@ public class PetDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * Version 2 adds secondary indexes on the pets table. The name and breed indexes also carry
+     * the other column, so together with the implicit _ID they cover the catalog projection.
      */
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+    static void upgradeToVersion2(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetEntry.INDEX_NAME + " ON " + PetEntry.TABLE_NAME
+                + " (" + PetEntry.COLUMN_PET_NAME + ", " + PetEntry.COLUMN_PET_BREED + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetEntry.INDEX_BREED + " ON " + PetEntry.TABLE_NAME
+                + " (" + PetEntry.COLUMN_PET_BREED + ", " + PetEntry.COLUMN_PET_NAME + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetEntry.INDEX_GENDER_WEIGHT + " ON " + PetEntry.TABLE_NAME
+                + " (" + PetEntry.COLUMN_PET_GENDER + ", " + PetEntry.COLUMN_PET_WEIGHT + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PetEntry.INDEX_WEIGHT + " ON " + PetEntry.TABLE_NAME
+                + " (" + PetEntry.COLUMN_PET_WEIGHT + ");");
+    }
+
+    /**
+     * Version 3 adds an FTS4 table over the name and breed of the pets. It uses the pets table as
+     * external content, so the text is not stored twice, and keeps a prefix index for the
+     * search-as-you-type queries. Triggers keep it in sync with every write to the pets table
+     * that touches an indexed column, so changing the weight or gender of a pet costs nothing.
+     */
+    static void upgradeToVersion3(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + PetEntry.FTS_TABLE_NAME + " USING fts4("
+                + "content=\"" + PetEntry.TABLE_NAME + "\", "
+                + PetEntry.COLUMN_PET_NAME + ", "
+                + PetEntry.COLUMN_PET_BREED + ", "
+                + "prefix=\"2,3\");");
+
+        String newRow = " VALUES (new." + PetEntry._ID + ", new." + PetEntry.COLUMN_PET_NAME
+                + ", new." + PetEntry.COLUMN_PET_BREED + ");";
+        String ftsColumns = " (docid, " + PetEntry.COLUMN_PET_NAME + ", " + PetEntry.COLUMN_PET_BREED + ")";
+        String ftsDelete = "DELETE FROM " + PetEntry.FTS_TABLE_NAME + " WHERE docid = old." + PetEntry._ID + ";";
+        String indexedColumns = " OF " + PetEntry._ID + ", " + PetEntry.COLUMN_PET_NAME + ", " + PetEntry.COLUMN_PET_BREED;
+
+        db.execSQL("CREATE TRIGGER " + PetEntry.FTS_TABLE_NAME + "_after_insert AFTER INSERT ON "
+                + PetEntry.TABLE_NAME + " BEGIN INSERT INTO " + PetEntry.FTS_TABLE_NAME + ftsColumns + newRow + " END;");
+        db.execSQL("CREATE TRIGGER " + PetEntry.FTS_TABLE_NAME + "_before_update BEFORE UPDATE" + indexedColumns + " ON "
+                + PetEntry.TABLE_NAME + " BEGIN " + ftsDelete + " END;");
+        db.execSQL("CREATE TRIGGER " + PetEntry.FTS_TABLE_NAME + "_after_update AFTER UPDATE" + indexedColumns + " ON "
+                + PetEntry.TABLE_NAME + " BEGIN INSERT INTO " + PetEntry.FTS_TABLE_NAME + ftsColumns + newRow + " END;");
+        db.execSQL("CREATE TRIGGER " + PetEntry.FTS_TABLE_NAME + "_before_delete BEFORE DELETE ON "
+                + PetEntry.TABLE_NAME + " BEGIN " + ftsDelete + " END;");
+
+        // Index the pets that are already in the table
+        db.execSQL("INSERT INTO " + PetEntry.FTS_TABLE_NAME + " (" + PetEntry.FTS_TABLE_NAME + ") VALUES ('rebuild');");
     }
-}
\ No newline at end of file
+}
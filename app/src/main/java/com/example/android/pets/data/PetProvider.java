@@ -1,18 +1,42 @@
 package com.example.android.pets.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.MergeCursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.pets.R;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 import static com.example.android.pets.data.PetContract.CONTENT_AUTHORITY;
 import static com.example.android.pets.data.PetContract.PATH_PETS;
+import static com.example.android.pets.data.PetContract.PATH_SEARCH;
 import static com.example.android.pets.data.PetContract.PetEntry;
 
 public class PetProvider extends ContentProvider {
@@ -24,21 +48,119 @@ public class PetProvider extends ContentProvider {
 
     private static final int PET_ID = 101;
 
+    private static final int PET_SEARCH = 102;
+
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
     static {
         uriMatcher.addURI(CONTENT_AUTHORITY, PATH_PETS, PETS);
         uriMatcher.addURI(CONTENT_AUTHORITY, PATH_PETS + "/#", PET_ID);
+        uriMatcher.addURI(CONTENT_AUTHORITY, PATH_PETS + "/" + PATH_SEARCH + "/*", PET_SEARCH);
+    }
+
+    /**
+     * Tables of a full-text search, and the columns they return. The pets table is joined on the
+     * docid of the search table, which is the ID of the pet.
+     */
+    private static final String SEARCH_TABLES = PetEntry.TABLE_NAME + " JOIN " + PetEntry.FTS_TABLE_NAME
+            + " ON " + PetEntry.TABLE_NAME + "." + PetEntry._ID + " = " + PetEntry.FTS_TABLE_NAME + ".docid";
+
+    private static final Map<String, String> SEARCH_PROJECTION_MAP = new HashMap<>();
+
+    static {
+        for (String column : new String[]{PetEntry._ID, PetEntry.COLUMN_PET_NAME, PetEntry.COLUMN_PET_BREED,
+                PetEntry.COLUMN_PET_GENDER, PetEntry.COLUMN_PET_WEIGHT}) {
+            SEARCH_PROJECTION_MAP.put(column, PetEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
     }
 
+    /**
+     * Matches of a search are read in the order of the search index, which is the ID of the pet.
+     * A page of results then only reads the matches up to its end, rather than sorting every
+     * match first, and a page read at an offset follows exactly the previous one.
+     */
+    private static final String SEARCH_SORT_ORDER = PetEntry.FTS_TABLE_NAME + ".docid";
+
+
+
+    /** How long change notifications are collected before they are sent */
+    private static final long NOTIFY_WINDOW_MILLIS = 50;
+
+    /** Number of single pet uris after which the list uri is notified instead */
+    private static final int NOTIFY_MAX_ITEM_URIS = 10;
+
     private PetDbHelper dbHelper;
 
+    private PetChangeNotifier changeNotifier;
+
+    /**
+     * Cache of single pets. Its limits are the {@code row_cache_max_entries} and
+     * {@code row_cache_max_kib} integer resources, so they can be tuned per device configuration.
+     */
+    private PetRowCache rowCache;
+
+    /**
+     * State of a batch, from {@link #bulkInsert} or {@link #applyBatch}. The change
+     * notifications of its writes are held back and sent once the batch has been committed,
+     * and the pets it changed are dropped from the cache again at that point.
+     */
+    private static class Batch {
+        /**
+         * Compiled insert statements of the batch, by the sorted columns they insert. Pets
+         * inserted with the same columns go through the same statement.
+         */
+        final Map<String, SQLiteStatement> insertStatements = new HashMap<>();
+        /** Uris changed by the batch, in the order they were first changed */
+        final Set<Uri> changedUris = new LinkedHashSet<>();
+        /** IDs of the pets updated or deleted by the batch */
+        final Set<Long> changedIds = new HashSet<>();
+        /** Whether the batch wrote to the whole list, which may have touched any pet */
+        boolean listChanged;
+    }
+
+    /** Batch running on the current thread, or null outside of a batch */
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
+        Resources resources = getContext().getResources();
+        rowCache = new PetRowCache(resources.getInteger(R.integer.row_cache_max_entries),
+                resources.getInteger(R.integer.row_cache_max_kib) * 1024L);
         dbHelper = new PetDbHelper(getContext());
+        changeNotifier = new PetChangeNotifier(getContext().getContentResolver(),
+                NOTIFY_WINDOW_MILLIS, NOTIFY_MAX_ITEM_URIS);
         return true;
     }
 
+    /**
+     * Makes this provider read and write the given database instead of the shelter one. Only
+     * meant for the tests and the benchmarks of debug builds, so they never touch the pets of
+     * the shelter.
+     */
+    @VisibleForTesting
+    void setDbHelper(PetDbHelper helper) {
+        dbHelper.close();
+        dbHelper = helper;
+        rowCache.clear();
+    }
+
+    /**
+     * Makes this provider send its change notifications through the given notifier. Only
+     * meant for the tests and the benchmarks of debug builds, whose writes must not make the
+     * observers of the shelter reload.
+     */
+    @VisibleForTesting
+    void setChangeNotifier(PetChangeNotifier notifier) {
+        changeNotifier.quit();
+        changeNotifier = notifier;
+    }
+
+    @Override
+    public void shutdown() {
+        changeNotifier.quit();
+        dbHelper.close();
+    }
+
     @Nullable
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder) {
@@ -51,15 +173,36 @@ public class PetProvider extends ContentProvider {
 
         switch (match) {
             case PETS:
-                cursor = database.query(PetEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                String limit = null;
+                if (uri.getQueryParameter(PetEntry.QUERY_PARAMETER_AFTER_ID) != null) {
+                    // Keyset pagination: seek past the last ID of the previous page on the
+                    // primary key, so every page costs the same however deep it is.
+                    long afterId = parseLongParameter(uri, PetEntry.QUERY_PARAMETER_AFTER_ID);
+                    selection = TextUtils.isEmpty(selection)
+                            ? PetEntry._ID + ">?"
+                            : "(" + selection + ") AND " + PetEntry._ID + ">?";
+                    selectionArgs = appendSelectionArg(selectionArgs, String.valueOf(afterId));
+                    sortOrder = PetEntry._ID + " ASC";
+                }
+                if (uri.getQueryParameter(PetEntry.QUERY_PARAMETER_LIMIT) != null)
+                    limit = String.valueOf(parseLongParameter(uri, PetEntry.QUERY_PARAMETER_LIMIT));
+                cursor = database.query(PetEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder, limit);
                 break;
 
             case PET_ID:
-                selection = PetEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                cursor = database.query(PetEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                long id = ContentUris.parseId(uri);
+                cursor = rowCache.get(id, projection);
+                if (cursor == null)
+                    cursor = queryPet(database, id, projection, sortOrder);
                 break;
 
+            case PET_SEARCH:
+                cursor = searchPets(database, uri, projection, sortOrder);
+                // Search results depend on every pet, so watch the whole list rather than the
+                // search uri, which the single pet uris do not reach
+                cursor.setNotificationUri(getContext().getContentResolver(), PetEntry.CONTENT_URI);
+                return cursor;
+
             default:
                 throw new IllegalArgumentException("Cannot query unknown Uri : " + uri);
         }
@@ -69,6 +212,122 @@ public class PetProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Reads a single pet from the database and caches it. The whole row is read whatever the
+     * projection, so that any later projection can be served from the cache.
+     */
+    private Cursor queryPet(SQLiteDatabase database, long id, @Nullable String[] projection, @Nullable String sortOrder) {
+        String selection = PetEntry._ID + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(id)};
+
+        long version = rowCache.getVersion();
+        Object[] row = null;
+        Cursor cursor = database.query(PetEntry.TABLE_NAME, PetRowCache.COLUMNS, selection, selectionArgs, null, null, null);
+        try {
+            if (cursor.moveToFirst())
+                row = PetRowCache.readRow(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        if (row != null) {
+            rowCache.put(id, row, version);
+            cursor = PetRowCache.toCursor(row, projection);
+            if (cursor != null)
+                return cursor;
+        }
+
+        // The pet does not exist or the projection is not made of plain columns
+        return database.query(PetEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+    }
+
+    /**
+     * Runs a full-text search for the last path segment of the uri. Every word of the text is
+     * matched as a prefix of the words in the name or breed of the pets.
+     */
+    private Cursor searchPets(SQLiteDatabase database, Uri uri, @Nullable String[] projection, @Nullable String sortOrder) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder nameMatch = new StringBuilder();
+        for (String word : uri.getLastPathSegment().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (match.length() != 0) {
+                match.append(' ');
+                nameMatch.append(' ');
+            }
+            match.append(word).append('*');
+            nameMatch.append(PetEntry.COLUMN_PET_NAME).append(':').append(word).append('*');
+        }
+        if (match.length() == 0)
+            return new MatrixCursor(projection != null ? projection : new String[]{PetEntry._ID});
+
+        long limit = Long.MAX_VALUE;
+        long offset = 0;
+        if (uri.getQueryParameter(PetEntry.QUERY_PARAMETER_LIMIT) != null)
+            limit = parseLongParameter(uri, PetEntry.QUERY_PARAMETER_LIMIT);
+        if (uri.getQueryParameter(PetEntry.QUERY_PARAMETER_OFFSET) != null)
+            offset = parseLongParameter(uri, PetEntry.QUERY_PARAMETER_OFFSET);
+
+        if (sortOrder != null)
+            return queryMatches(database, projection, match.toString(), null, sortOrder, offset, limit);
+
+        // Pets whose name matches come before the pets that only match on their breed. The
+        // pets of the name are read first, and the others only when they do not fill the page.
+        Cursor names = queryMatches(database, projection, nameMatch.toString(), null,
+                SEARCH_SORT_ORDER, offset, limit);
+        int nameRows = names.getCount();
+        if (nameRows == limit)
+            return names;
+
+        // Unless the page starts after the last of them, the pets of the name were all counted
+        long nameCount = nameRows != 0 || offset == 0
+                ? offset + nameRows
+                : DatabaseUtils.longForQuery(database, "SELECT count(*) FROM " + PetEntry.FTS_TABLE_NAME
+                + " WHERE " + PetEntry.FTS_TABLE_NAME + " MATCH ?", new String[]{nameMatch.toString()});
+        Cursor others = queryMatches(database, projection, match.toString(), nameMatch.toString(),
+                SEARCH_SORT_ORDER, Math.max(offset - nameCount, 0), limit - nameRows);
+        return new MergeCursor(new Cursor[]{names, others});
+    }
+
+    /**
+     * Reads the pets that match the given full-text query, leaving out the ones that match the
+     * excluded query if there is one.
+     */
+    private static Cursor queryMatches(SQLiteDatabase database, @Nullable String[] projection, String match,
+                                       @Nullable String excludedMatch, String sortOrder, long offset, long limit) {
+        String selection = PetEntry.FTS_TABLE_NAME + " MATCH ?";
+        String[] selectionArgs = {match};
+        if (excludedMatch != null) {
+            selection += " AND " + PetEntry.FTS_TABLE_NAME + ".docid NOT IN (SELECT docid FROM "
+                    + PetEntry.FTS_TABLE_NAME + " WHERE " + PetEntry.FTS_TABLE_NAME + " MATCH ?)";
+            selectionArgs = new String[]{match, excludedMatch};
+        }
+        // "LIMIT offset, count"
+        String limitClause = offset == 0 && limit == Long.MAX_VALUE ? null : offset + "," + limit;
+
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(SEARCH_TABLES);
+        builder.setProjectionMap(SEARCH_PROJECTION_MAP);
+        return builder.query(database, projection, selection, selectionArgs, null, null, sortOrder, limitClause);
+    }
+
+    private static long parseLongParameter(Uri uri, String name) {
+        try {
+            return Long.parseLong(uri.getQueryParameter(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in Uri : " + uri);
+        }
+    }
+
+    private static String[] appendSelectionArg(@Nullable String[] selectionArgs, String arg) {
+        if (selectionArgs == null)
+            return new String[]{arg};
+        String[] args = new String[selectionArgs.length + 1];
+        System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+        args[selectionArgs.length] = arg;
+        return args;
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -81,6 +340,9 @@ public class PetProvider extends ContentProvider {
             case PET_ID:
                 return PetEntry.CONTENT_ITEM_TYPE;
 
+            case PET_SEARCH:
+                return PetEntry.CONTENT_LIST_TYPE;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri + " with match " + match);
         }
@@ -94,11 +356,16 @@ public class PetProvider extends ContentProvider {
         int match = uriMatcher.match(uri);
         switch (match) {
             case PETS:
+                // Inserts of a batch are logged once for the whole batch
+                boolean logged = currentBatch.get() == null && Log.isLoggable(LOG_TAG, Log.VERBOSE);
+                long start = logged ? SystemClock.elapsedRealtimeNanos() : 0;
                 Long id = insertPet(uri, values);
                 if (id == -1)
                     Log.e(LOG_TAG, "Failed to insert row for " + uri);
                 else
                     retUri = ContentUris.withAppendedId(PetEntry.CONTENT_URI, id);
+                if (logged)
+                    logThroughput("insert", id == -1 ? 0 : 1, start);
                 break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown Uri : " + uri);
@@ -124,25 +391,225 @@ public class PetProvider extends ContentProvider {
             throw new IllegalArgumentException("Pet requires a gender");
         }
 
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            long id = executeInsert(batch, values);
+            if (id != -1)
+                notifyChange(uri);
+            return id;
+        }
+
         SQLiteDatabase database = dbHelper.getWritableDatabase();
         Long new_row_id = database.insert(PetEntry.TABLE_NAME, null, values);
         if (new_row_id != -1)
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
 
         return new_row_id;
     }
 
+    /**
+     * Inserts a pet through a compiled statement of the batch, binding the values the same way
+     * {@link SQLiteDatabase#insert} does. A column the table does not have or a value the table
+     * does not accept is logged and -1 is returned, and columns that are not given get the
+     * default value of the table.
+     */
+    private long executeInsert(Batch batch, ContentValues values) {
+        String[] columns = values.keySet().toArray(new String[0]);
+        Arrays.sort(columns);
+        String key = TextUtils.join(",", columns);
+
+        try {
+            SQLiteStatement statement = batch.insertStatements.get(key);
+            if (statement == null) {
+                String[] arguments = new String[columns.length];
+                Arrays.fill(arguments, "?");
+                statement = dbHelper.getWritableDatabase().compileStatement("INSERT INTO "
+                        + PetEntry.TABLE_NAME + " (" + key + ") VALUES ("
+                        + TextUtils.join(",", arguments) + ")");
+                batch.insertStatements.put(key, statement);
+            }
+
+            statement.clearBindings();
+            for (int i = 0; i < columns.length; i++)
+                DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(columns[i]));
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            Log.e(LOG_TAG, "Error inserting " + values, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Inserts all the given pets in one transaction, reusing one compiled statement for the pets
+     * of the same columns and sending one change notification once the whole batch has been
+     * committed. If any of the pets fails validation the batch is rolled back and the exception
+     * is rethrown.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        int match = uriMatcher.match(uri);
+        if (match != PETS)
+            throw new IllegalArgumentException("Cannot insert unknown Uri : " + uri);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int rowsInserted = 0;
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Batch batch = beginBatch(database);
+        try {
+            for (ContentValues value : values) {
+                if (insertPet(uri, value) == -1)
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                else
+                    rowsInserted++;
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            endBatch(database, batch);
+        }
+        notifyBatch(batch);
+
+        logThroughput("bulkInsert", rowsInserted, start);
+        return rowsInserted;
+    }
+
+    /**
+     * Applies all the operations in one transaction. Inserts go through compiled statements
+     * reused for the pets of the same columns. Once the batch has been committed the uris it changed are notified, the
+     * single pet ones being promoted to {@link PetEntry#CONTENT_URI} only when there are many,
+     * and only the pets it changed are dropped from the cache.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = SystemClock.elapsedRealtimeNanos();
+        ContentProviderResult[] results;
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Batch batch = beginBatch(database);
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            endBatch(database, batch);
+        }
+        notifyBatch(batch);
+
+        logThroughput("applyBatch", results.length, start);
+        return results;
+    }
+
+    private Batch beginBatch(SQLiteDatabase database) {
+        Batch batch = new Batch();
+        // Immediate rather than exclusive, so that with write-ahead logging the readers go on
+        // while the batch is written
+        database.beginTransactionNonExclusive();
+        currentBatch.set(batch);
+        return batch;
+    }
+
+    private void endBatch(SQLiteDatabase database, Batch batch) {
+        try {
+            database.endTransaction();
+        } finally {
+            currentBatch.remove();
+            for (SQLiteStatement statement : batch.insertStatements.values())
+                statement.close();
+            // The pets changed by the batch may have been read and cached again while the batch
+            // was not yet committed
+            if (batch.listChanged) {
+                rowCache.clear();
+            } else {
+                for (long id : batch.changedIds)
+                    rowCache.invalidate(id);
+            }
+        }
+    }
+
+    /**
+     * Sends the change notifications held back by a committed batch.
+     */
+    private void notifyBatch(Batch batch) {
+        if (batch.changedUris.isEmpty())
+            return;
+        for (Uri uri : batch.changedUris)
+            changeNotifier.notifyChange(uri);
+        changeNotifier.flush();
+    }
+
+    /**
+     * Queues a change notification for the given uri. Inside a batch it is held back until the
+     * batch has been committed.
+     */
+    private void notifyChange(Uri uri) {
+        Batch batch = currentBatch.get();
+        if (batch != null)
+            batch.changedUris.add(uri);
+        else
+            changeNotifier.notifyChange(uri);
+    }
+
+    /**
+     * Drops a pet from the cache after it has been updated or deleted.
+     */
+    private void invalidatePet(long id) {
+        rowCache.invalidate(id);
+        Batch batch = currentBatch.get();
+        if (batch != null)
+            batch.changedIds.add(id);
+    }
+
+    /**
+     * Drops every pet from the cache after a write that may have touched any of them.
+     */
+    private void invalidateAllPets() {
+        rowCache.clear();
+        Batch batch = currentBatch.get();
+        if (batch != null)
+            batch.listChanged = true;
+    }
+
+    /**
+     * Returns the cache of single pets in front of the database.
+     */
+    public PetRowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * Returns the notifier that coalesces the change notifications of this provider.
+     */
+    public PetChangeNotifier getChangeNotifier() {
+        return changeNotifier;
+    }
+
+    /**
+     * Logs the rows per second of a write, the same way for a single pet and for a batch so
+     * they can be compared.
+     */
+    private void logThroughput(String operation, int rows, long startNanos) {
+        long elapsed = Math.max(SystemClock.elapsedRealtimeNanos() - startNanos, 1);
+        long rowsPerSecond = rows * 1000000000L / elapsed;
+        Log.v(LOG_TAG, operation + ": " + rows + " rows in " + elapsed / 1000 + " us (" + rowsPerSecond + " rows/sec)");
+    }
+
 
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
         int match = uriMatcher.match(uri);
         switch (match) {
             case PETS:
-                return deletePet(uri, selection, selectionArgs);
+                int rowsDeleted = deletePet(uri, selection, selectionArgs);
+                invalidateAllPets();
+                return rowsDeleted;
             case PET_ID:
+                long id = ContentUris.parseId(uri);
                 selection = PetEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return deletePet(uri, selection, selectionArgs);
+                selectionArgs = new String[]{String.valueOf(id)};
+                rowsDeleted = deletePet(uri, selection, selectionArgs);
+                invalidatePet(id);
+                return rowsDeleted;
             default:
                 throw new IllegalArgumentException("Cannot query unknown Uri : " + uri);
         }
@@ -152,7 +619,7 @@ public class PetProvider extends ContentProvider {
         SQLiteDatabase database = dbHelper.getWritableDatabase();
         int rowsDeleted = database.delete(PetEntry.TABLE_NAME, selection, selectionArgs);
         if (rowsDeleted != 0)
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         return rowsDeleted;
     }
 
@@ -168,12 +635,17 @@ public class PetProvider extends ContentProvider {
 
         switch (match) {
             case PETS:
-                return updatePets(uri, values, selection, selectionArgs);
+                int rowsUpdated = updatePets(uri, values, selection, selectionArgs);
+                invalidateAllPets();
+                return rowsUpdated;
 
             case PET_ID:
+                long id = ContentUris.parseId(uri);
                 selection = PetEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updatePets(uri, values, selection, selectionArgs);
+                selectionArgs = new String[]{String.valueOf(id)};
+                rowsUpdated = updatePets(uri, values, selection, selectionArgs);
+                invalidatePet(id);
+                return rowsUpdated;
 
             default:
                 throw new IllegalArgumentException("Cannot query unknown Uri : " + uri);
@@ -208,7 +680,7 @@ public class PetProvider extends ContentProvider {
 
         int rowsUpdated = database.update(PetEntry.TABLE_NAME, values, selection, selectionArgs);
         if (rowsUpdated != 0)
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
 
         return rowsUpdated;
 
@@ -0,0 +1,209 @@
+package com.example.android.pets.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.example.android.pets.data.PetContract.PetEntry;
+
+/**
+ * Least recently used cache of single pets, keyed by their ID, so that opening the same pet
+ * again does not go back to the database. The cache is bounded both in number of pets and in
+ * estimated bytes, whichever is reached first.
+ * <p>
+ * Writers must call {@link #invalidate(long)} or {@link #clear()} once their change has been
+ * committed. A row read from the database before such a call is then refused by
+ * {@link #put(long, Object[], long)}, so a stale row can never be cached.
+ */
+public class PetRowCache {
+
+    /** Every column of a pet, in the order the cached rows hold them */
+    static final String[] COLUMNS = {
+            PetEntry._ID,
+            PetEntry.COLUMN_PET_NAME,
+            PetEntry.COLUMN_PET_BREED,
+            PetEntry.COLUMN_PET_GENDER,
+            PetEntry.COLUMN_PET_WEIGHT
+    };
+
+    /** Rough cost of a cached entry besides the text it holds (map entry, key, array, numbers) */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    /** Rows in access order, the least recently used one first */
+    private final LinkedHashMap<Long, Object[]> rows = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+
+    /** Incremented by every invalidation, see {@link #put(long, Object[], long)} */
+    private long version = 0;
+
+    private long hitCount = 0;
+
+    private long missCount = 0;
+
+    private long evictionCount = 0;
+
+    /**
+     * Constructs a new instance of {@link PetRowCache}.
+     *
+     * @param maxEntries maximum number of pets kept in the cache
+     * @param maxBytes   maximum estimated size of the pets kept in the cache
+     */
+    public PetRowCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the current version of the cache, to be passed to {@link #put(long, Object[], long)}
+     * for a row read from the database after this call.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a cursor over the cached pet with the given projection, or null if the pet is not
+     * cached or the projection asks for a column the cache does not hold.
+     */
+    public synchronized Cursor get(long id, String[] projection) {
+        Object[] row = rows.get(id);
+        if (row == null) {
+            missCount++;
+            return null;
+        }
+
+        Cursor cursor = toCursor(row, projection);
+        if (cursor == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cursor;
+    }
+
+    /**
+     * Caches a row read from the database, holding the values of {@link #COLUMNS}. The row is
+     * ignored if the cache has been invalidated since {@code readVersion} was taken.
+     */
+    public synchronized void put(long id, Object[] row, long readVersion) {
+        if (readVersion != version)
+            return;
+
+        Object[] previous = rows.put(id, row);
+        if (previous != null)
+            bytes -= sizeOf(previous);
+        bytes += sizeOf(row);
+
+        Iterator<Map.Entry<Long, Object[]>> iterator = rows.entrySet().iterator();
+        while ((rows.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Drops the pet with the given ID, after it has been updated or deleted.
+     */
+    public synchronized void invalidate(long id) {
+        version++;
+        Object[] row = rows.remove(id);
+        if (row != null)
+            bytes -= sizeOf(row);
+    }
+
+    /**
+     * Drops every pet, after a change that may have touched any of them.
+     */
+    public synchronized void clear() {
+        version++;
+        rows.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Reads the current row of the cursor, which must hold every column of {@link #COLUMNS}.
+     */
+    static Object[] readRow(Cursor cursor) {
+        Object[] row = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int column = cursor.getColumnIndexOrThrow(COLUMNS[i]);
+            switch (cursor.getType(column)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    row[i] = null;
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row[i] = cursor.getLong(column);
+                    break;
+                default:
+                    row[i] = cursor.getString(column);
+                    break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns a cursor over the given row with the given projection, or null if the projection
+     * asks for a column the row does not hold.
+     */
+    static Cursor toCursor(Object[] row, String[] projection) {
+        String[] columns = projection != null ? projection : COLUMNS;
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int column = indexOf(columns[i]);
+            if (column == -1)
+                return null;
+            values[i] = row[column];
+        }
+
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    private static int indexOf(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column))
+                return i;
+        }
+        return -1;
+    }
+
+    private static long sizeOf(Object[] row) {
+        long size = ENTRY_OVERHEAD_BYTES;
+        for (Object value : row) {
+            if (value instanceof String)
+                size += 2 * ((String) value).length();
+        }
+        return size;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return bytes;
+    }
+}
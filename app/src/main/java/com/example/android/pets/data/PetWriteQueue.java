@@ -0,0 +1,209 @@
+package com.example.android.pets.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.example.android.pets.data.PetContract.CONTENT_AUTHORITY;
+
+/**
+ * Serial queue that applies every write to the pets on a single background thread, so the UI
+ * never waits for the database. Writes queued while another one runs are applied together in a
+ * single transaction through {@link PetProvider#applyBatch}.
+ * <p>
+ * The time from queueing a write to its result is recorded, together with the depth of the
+ * queue, to show when writes come in faster than they can be applied.
+ */
+public class PetWriteQueue {
+
+    //Tag for log messages
+    private static final String LOG_TAG = PetWriteQueue.class.getSimpleName();
+
+    /** Maximum number of queued writes applied in a single transaction */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /** Number of most recent write latencies the percentiles are computed over */
+    private static final int LATENCY_SAMPLES = 1024;
+
+    /**
+     * Callback notified on the main thread once a write has been applied. The result holds the
+     * uri of an inserted pet or the number of updated or deleted pets, it is null if the write
+     * failed.
+     */
+    public interface Callback {
+        void onWriteFinished(@Nullable ContentProviderResult result);
+    }
+
+    private static PetWriteQueue instance;
+
+    private static class Write {
+        final ContentProviderOperation operation;
+        final Callback callback;
+        final long queuedAt = SystemClock.elapsedRealtime();
+
+        Write(ContentProviderOperation operation, Callback callback) {
+            this.operation = operation;
+            this.callback = callback;
+        }
+    }
+
+    private final ContentResolver contentResolver;
+
+    private final LinkedBlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Ring buffer of the most recent write latencies, in milliseconds */
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+
+    private int latencyCount = 0;
+
+    private int maxQueueDepth = 0;
+
+    /**
+     * Returns the queue shared by the whole app, there must be a single writer.
+     */
+    public static synchronized PetWriteQueue getInstance(Context context) {
+        if (instance == null)
+            instance = new PetWriteQueue(context.getApplicationContext().getContentResolver());
+        return instance;
+    }
+
+    private PetWriteQueue(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processWrites();
+            }
+        }, LOG_TAG);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void insert(Uri uri, ContentValues values, @Nullable Callback callback) {
+        enqueue(ContentProviderOperation.newInsert(uri).withValues(values).build(), callback);
+    }
+
+    public void update(Uri uri, ContentValues values, @Nullable Callback callback) {
+        enqueue(ContentProviderOperation.newUpdate(uri).withValues(values).build(), callback);
+    }
+
+    public void delete(Uri uri, @Nullable Callback callback) {
+        enqueue(ContentProviderOperation.newDelete(uri).build(), callback);
+    }
+
+    private void enqueue(ContentProviderOperation operation, Callback callback) {
+        queue.add(new Write(operation, callback));
+        synchronized (latencies) {
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+    }
+
+    private void processWrites() {
+        List<Write> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            applyBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void applyBatch(List<Write> batch) {
+        long start = SystemClock.elapsedRealtime();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(batch.size());
+        for (Write write : batch)
+            operations.add(write.operation);
+
+        try {
+            ContentProviderResult[] results = contentResolver.applyBatch(CONTENT_AUTHORITY, operations);
+            for (int i = 0; i < batch.size(); i++)
+                finish(batch.get(i), results[i]);
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            if (batch.size() == 1) {
+                Log.e(LOG_TAG, "Failed to apply " + batch.get(0).operation, e);
+                finish(batch.get(0), null);
+            } else {
+                // The whole transaction was rolled back, apply the writes one by one so that
+                // only the failing ones are reported as failed
+                for (Write write : batch)
+                    applyBatch(Arrays.asList(write));
+                return;
+            }
+        }
+
+        Log.v(LOG_TAG, "Applied " + batch.size() + " writes in " + (SystemClock.elapsedRealtime() - start)
+                + " ms, queue depth " + getQueueDepth() + ", latency p50 " + getLatencyPercentile(50)
+                + " ms, p99 " + getLatencyPercentile(99) + " ms");
+    }
+
+    private void finish(final Write write, final ContentProviderResult result) {
+        long latency = SystemClock.elapsedRealtime() - write.queuedAt;
+        synchronized (latencies) {
+            latencies[latencyCount % LATENCY_SAMPLES] = latency;
+            latencyCount++;
+        }
+
+        if (write.callback == null)
+            return;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                write.callback.onWriteFinished(result);
+            }
+        });
+    }
+
+    /**
+     * Returns the given percentile of the most recent write latencies, from queueing a write to
+     * its result, in milliseconds.
+     */
+    public long getLatencyPercentile(int percentile) {
+        long[] samples;
+        synchronized (latencies) {
+            samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        if (samples.length == 0)
+            return 0;
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return samples[Math.max(0, Math.min(index, samples.length - 1))];
+    }
+
+    /**
+     * Returns the number of writes waiting to be applied.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the largest number of writes that have been waiting at the same time.
+     */
+    public int getMaxQueueDepth() {
+        synchronized (latencies) {
+            return maxQueueDepth;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.android.pets;
+
+import android.app.Activity;
+import android.view.Menu;
+import android.view.MenuItem;
+
+/**
+ * The benchmarks only exist in debug builds, so release builds add no option to the menu of the
+ * catalog.
+ */
+class BenchmarkMenu {
+
+    private BenchmarkMenu() {
+    }
+
+    static void inflate(Activity activity, Menu menu) {
+    }
+
+    static boolean onOptionsItemSelected(Activity activity, MenuItem item) {
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.pets.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.net.Uri;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests of the coalescing of {@link PetChangeNotifier}. The window is long enough that only
+ * {@link PetChangeNotifier#flush()} sends the notifications.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetChangeNotifierTest {
+
+    private static final long WINDOW_MILLIS = 60000;
+
+    private static final int MAX_ITEM_URIS = 2;
+
+    private ContentResolver contentResolver;
+
+    private PetChangeNotifier notifier;
+
+    @Before
+    public void setUp() {
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        notifier = new PetChangeNotifier(contentResolver, WINDOW_MILLIS, MAX_ITEM_URIS);
+    }
+
+    @After
+    public void tearDown() {
+        notifier.quit();
+    }
+
+    @Test
+    public void itemUrisUpToTheMaximumAreSentAsIs() {
+        notifier.notifyChange(petUri(1));
+        notifier.notifyChange(petUri(2));
+        notifier.notifyChange(petUri(1));
+        notifier.flush();
+
+        assertEquals(Arrays.asList(petUri(1), petUri(2)), notifiedUris());
+        assertEquals(3, notifier.getNotificationsReceived());
+        assertEquals(2, notifier.getNotificationsSent());
+    }
+
+    @Test
+    public void itemUrisAboveTheMaximumArePromotedToTheListUri() {
+        notifier.notifyChange(petUri(1));
+        notifier.notifyChange(petUri(2));
+        notifier.notifyChange(petUri(3));
+        notifier.flush();
+
+        assertEquals(Arrays.asList(PetEntry.CONTENT_URI), notifiedUris());
+        assertEquals(3, notifier.getNotificationsReceived());
+        assertEquals(1, notifier.getNotificationsSent());
+    }
+
+    @Test
+    public void listUriCoversItemUris() {
+        notifier.notifyChange(petUri(1));
+        notifier.notifyChange(PetEntry.CONTENT_URI);
+        notifier.notifyChange(petUri(2));
+        notifier.flush();
+
+        assertEquals(Arrays.asList(PetEntry.CONTENT_URI), notifiedUris());
+        assertEquals(3, notifier.getNotificationsReceived());
+        assertEquals(1, notifier.getNotificationsSent());
+    }
+
+    @Test
+    public void silentNotifierOnlyCounts() {
+        PetChangeNotifier silent = PetChangeNotifier.silent();
+        silent.notifyChange(petUri(1));
+        silent.flush();
+        silent.quit();
+
+        assertEquals(0, notifiedUris().size());
+        assertEquals(1, silent.getNotificationsReceived());
+        assertEquals(0, silent.getNotificationsSent());
+    }
+
+    private static Uri petUri(long id) {
+        return ContentUris.withAppendedId(PetEntry.CONTENT_URI, id);
+    }
+
+    private List<Uri> notifiedUris() {
+        List<Uri> uris = new ArrayList<>();
+        for (ShadowContentResolver.NotifiedUri notified : shadowOf(contentResolver).getNotifiedUris())
+            uris.add(notified.uri);
+        return uris;
+    }
+}
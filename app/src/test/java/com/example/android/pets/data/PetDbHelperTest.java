@@ -0,0 +1,258 @@
+package com.example.android.pets.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the migrations of {@link PetDbHelper}, and of the indexes they add being used by the
+ * filters of the catalog.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetDbHelperTest {
+
+    private static final String DATABASE_NAME = "shelter-test.db";
+
+    private Context context;
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        context.deleteDatabase(DATABASE_NAME);
+        db = SQLiteDatabase.create(null);
+        PetDbHelper.createVersion1(db);
+        insertPet(db, "Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4);
+        insertPet(db, "Garfield", "Tabby", PetEntry.GENDER_MALE, 7);
+        insertPet(db, "Binx", null, PetEntry.GENDER_UNKNOWN, 0);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeToVersion2KeepsPets() {
+        List<String> pets = readPets(db);
+
+        PetDbHelper.migrate(db, 2);
+
+        assertEquals(pets, readPets(db));
+        assertTrue(hasIndex(db, PetEntry.INDEX_NAME));
+        assertTrue(hasIndex(db, PetEntry.INDEX_BREED));
+        assertTrue(hasIndex(db, PetEntry.INDEX_GENDER_WEIGHT));
+        assertTrue(hasIndex(db, PetEntry.INDEX_WEIGHT));
+    }
+
+    @Test
+    public void upgradeToVersion3KeepsAndIndexesPets() {
+        List<String> pets = readPets(db);
+
+        PetDbHelper.migrate(db, 2);
+        PetDbHelper.migrate(db, 3);
+
+        assertEquals(pets, readPets(db));
+        // The pets that were already there are found by the full-text search
+        assertEquals(1, countMatches(db, "garf*"));
+        assertEquals(1, countMatches(db, "pom*"));
+    }
+
+    @Test
+    public void searchIndexFollowsRenamedPets() {
+        upgrade();
+        ContentValues values = new ContentValues();
+        values.put(PetEntry.COLUMN_PET_NAME, "Felix");
+        db.update(PetEntry.TABLE_NAME, values, PetEntry.COLUMN_PET_NAME + "=?", new String[]{"Garfield"});
+
+        assertEquals(0, countMatches(db, "garf*"));
+        assertEquals(1, countMatches(db, "felix"));
+        assertEquals(1, countMatches(db, "tabby"));
+    }
+
+    @Test
+    public void searchIndexIsNotRewrittenForOtherColumns() {
+        upgrade();
+        for (String trigger : new String[]{"_before_update", "_after_update"}) {
+            Cursor cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE type = 'trigger' AND name = ?",
+                    new String[]{PetEntry.FTS_TABLE_NAME + trigger});
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertTrue(cursor.getString(0), cursor.getString(0).contains("UPDATE OF "
+                        + PetEntry._ID + ", " + PetEntry.COLUMN_PET_NAME + ", " + PetEntry.COLUMN_PET_BREED + " ON"));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Test
+    public void openingVersion1FileUpgradesItInPlace() {
+        List<String> pets = readPets(db);
+        SQLiteDatabase file = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        PetDbHelper.createVersion1(file);
+        for (String pet : pets) {
+            String[] columns = pet.split("\\|", -1);
+            insertPet(file, columns[1], columns[2].isEmpty() ? null : columns[2],
+                    Integer.parseInt(columns[3]), Integer.parseInt(columns[4]));
+        }
+        file.setVersion(1);
+        file.close();
+
+        PetDbHelper helper = new PetDbHelper(context, DATABASE_NAME, false);
+        try {
+            SQLiteDatabase upgraded = helper.getReadableDatabase();
+            assertEquals(3, upgraded.getVersion());
+            assertEquals(pets, readPets(upgraded));
+            assertEquals(1, countMatches(upgraded, "tabby"));
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void upgradedSchemaMatchesNewSchema() {
+        PetDbHelper.migrate(db, 2);
+        PetDbHelper.migrate(db, 3);
+
+        SQLiteDatabase created = SQLiteDatabase.create(null);
+        try {
+            new PetDbHelper(context, DATABASE_NAME, false).onCreate(created);
+            assertEquals(readSchema(created), readSchema(db));
+        } finally {
+            created.close();
+        }
+    }
+
+    @Test
+    public void breedFilterSearchesBreedIndex() {
+        upgrade();
+        String plan = queryPlan(PetEntry.COLUMN_PET_BREED + "=?", "Tabby");
+        assertUsesIndex(plan, PetEntry.INDEX_BREED);
+    }
+
+    @Test
+    public void genderAndWeightFilterSearchesGenderWeightIndex() {
+        upgrade();
+        String plan = queryPlan(PetEntry.COLUMN_PET_GENDER + "=? AND "
+                + PetEntry.COLUMN_PET_WEIGHT + " BETWEEN ? AND ?", "1", "5", "10");
+        assertUsesIndex(plan, PetEntry.INDEX_GENDER_WEIGHT);
+    }
+
+    @Test
+    public void weightRangeFilterSearchesWeightIndex() {
+        upgrade();
+        String plan = queryPlan(PetEntry.COLUMN_PET_WEIGHT + " BETWEEN ? AND ?", "5", "10");
+        assertUsesIndex(plan, PetEntry.INDEX_WEIGHT);
+    }
+
+    private void upgrade() {
+        PetDbHelper.migrate(db, 2);
+        PetDbHelper.migrate(db, 3);
+    }
+
+    private String queryPlan(String selection, String... selectionArgs) {
+        String sql = "EXPLAIN QUERY PLAN SELECT " + PetEntry._ID + ", " + PetEntry.COLUMN_PET_NAME + ", "
+                + PetEntry.COLUMN_PET_BREED + " FROM " + PetEntry.TABLE_NAME + " WHERE " + selection;
+        Cursor cursor = db.rawQuery(sql, selectionArgs);
+        try {
+            StringBuilder plan = new StringBuilder();
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext())
+                plan.append(cursor.getString(detailColumn)).append('\n');
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void assertUsesIndex(String plan, String index) {
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertTrue(plan, plan.contains(" " + index + " "));
+        assertFalse(plan, plan.contains("SCAN"));
+    }
+
+    private static void insertPet(SQLiteDatabase db, String name, String breed, int gender, int weight) {
+        ContentValues values = new ContentValues();
+        values.put(PetEntry.COLUMN_PET_NAME, name);
+        values.put(PetEntry.COLUMN_PET_BREED, breed);
+        values.put(PetEntry.COLUMN_PET_GENDER, gender);
+        values.put(PetEntry.COLUMN_PET_WEIGHT, weight);
+        db.insertOrThrow(PetEntry.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Returns every pet as "id|name|breed|gender|weight", in ID order.
+     */
+    private static List<String> readPets(SQLiteDatabase db) {
+        Cursor cursor = db.query(PetEntry.TABLE_NAME, PetRowCache.COLUMNS, null, null, null, null, PetEntry._ID);
+        try {
+            List<String> pets = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                StringBuilder pet = new StringBuilder();
+                for (int column = 0; column < cursor.getColumnCount(); column++) {
+                    if (column != 0)
+                        pet.append('|');
+                    if (!cursor.isNull(column))
+                        pet.append(cursor.getString(column));
+                }
+                pets.add(pet.toString());
+            }
+            return pets;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int countMatches(SQLiteDatabase db, String match) {
+        Cursor cursor = db.rawQuery("SELECT docid FROM " + PetEntry.FTS_TABLE_NAME + " WHERE "
+                + PetEntry.FTS_TABLE_NAME + " MATCH ?", new String[]{match});
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean hasIndex(SQLiteDatabase db, String index) {
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[]{index});
+        try {
+            return cursor.getCount() == 1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> readSchema(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata' ORDER BY name", null);
+        try {
+            List<String> schema = new ArrayList<>();
+            while (cursor.moveToNext())
+                schema.add(cursor.getString(0) + " " + cursor.getString(1) + " " + cursor.getString(2));
+            return schema;
+        } finally {
+            cursor.close();
+        }
+    }
+}
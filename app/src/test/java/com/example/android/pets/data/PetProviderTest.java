@@ -0,0 +1,250 @@
+package com.example.android.pets.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the writes, searches and row cache of {@link PetProvider}, on a database of their
+ * own.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetProviderTest {
+
+    private static final String DATABASE_NAME = "shelter-provider-test.db";
+
+    private Context context;
+
+    private PetProvider provider;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        context.deleteDatabase(DATABASE_NAME);
+        provider = new PetProvider();
+        provider.attachInfo(context, null);
+        provider.setChangeNotifier(PetChangeNotifier.silent());
+        provider.setDbHelper(new PetDbHelper(context, DATABASE_NAME, false));
+    }
+
+    @After
+    public void tearDown() {
+        provider.shutdown();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void bulkInsertReturnsInsertedCount() {
+        ContentValues[] pets = {
+                pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4),
+                pet("Garfield", "Tabby", PetEntry.GENDER_MALE, 7),
+                pet("Binx", null, PetEntry.GENDER_UNKNOWN, 2)
+        };
+
+        assertEquals(3, provider.bulkInsert(PetEntry.CONTENT_URI, pets));
+        assertEquals(3, readPets().size());
+    }
+
+    @Test
+    public void bulkInsertDoesNotCountRejectedPets() {
+        ContentValues unknownColumn = pet("Garfield", "Tabby", PetEntry.GENDER_MALE, 7);
+        unknownColumn.put("color", "orange");
+        ContentValues[] pets = {pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4), unknownColumn};
+
+        assertEquals(1, provider.bulkInsert(PetEntry.CONTENT_URI, pets));
+        assertEquals(1, readPets().size());
+    }
+
+    @Test
+    public void bulkInsertRollsBackWhenAPetFailsValidation() {
+        ContentValues[] pets = {
+                pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4),
+                pet(null, "Tabby", PetEntry.GENDER_MALE, 7)
+        };
+
+        try {
+            provider.bulkInsert(PetEntry.CONTENT_URI, pets);
+            fail("A pet without a name was inserted");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, readPets().size());
+    }
+
+    @Test
+    public void bulkInsertStoresValuesLikeInsert() {
+        ContentValues single = new ContentValues();
+        single.put(PetEntry._ID, 10L);
+        single.put(PetEntry.COLUMN_PET_NAME, "Tommy");
+        single.put(PetEntry.COLUMN_PET_GENDER, PetEntry.GENDER_MALE);
+        single.put(PetEntry.COLUMN_PET_WEIGHT, 4.5);
+        ContentValues batched = new ContentValues(single);
+        batched.put(PetEntry._ID, 20L);
+
+        Uri uri = provider.insert(PetEntry.CONTENT_URI, single);
+        assertEquals(1, provider.bulkInsert(PetEntry.CONTENT_URI, new ContentValues[]{batched}));
+
+        assertEquals(10, ContentUris.parseId(uri));
+        List<String> pets = readPets();
+        assertEquals("10|Tommy||1|4.5", pets.get(0));
+        assertEquals("20|Tommy||1|4.5", pets.get(1));
+    }
+
+    @Test
+    public void searchListsNameMatchesBeforeBreedMatchesOnEveryPage() {
+        ContentValues[] pets = {
+                pet("Tommy", "Terrier", PetEntry.GENDER_MALE, 4),
+                pet("Terry", "Poodle", PetEntry.GENDER_MALE, 7),
+                pet("Rex", "Terrier", PetEntry.GENDER_MALE, 9),
+                pet("Terence", "Tabby", PetEntry.GENDER_MALE, 5),
+                pet("Binx", "Siamese", PetEntry.GENDER_UNKNOWN, 2)
+        };
+        provider.bulkInsert(PetEntry.CONTENT_URI, pets);
+
+        assertEquals(Arrays.asList(2L, 4L, 1L, 3L), searchIds("ter", 0, 10));
+        List<Long> paged = new ArrayList<>();
+        for (int offset = 0; offset < 5; offset++)
+            paged.addAll(searchIds("ter", offset, 1));
+        assertEquals(Arrays.asList(2L, 4L, 1L, 3L), paged);
+        assertEquals(Arrays.asList(4L, 1L, 3L), searchIds("ter", 1, 3));
+        assertEquals(Arrays.asList(3L), searchIds("ter", 3, 3));
+    }
+
+    @Test
+    public void updateOfOnePetDropsItFromCache() {
+        Uri uri = provider.insert(PetEntry.CONTENT_URI, pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4));
+        Uri other = provider.insert(PetEntry.CONTENT_URI, pet("Garfield", "Tabby", PetEntry.GENDER_MALE, 7));
+        readPet(uri);
+        readPet(other);
+        assertEquals(2, provider.getRowCache().size());
+
+        ContentValues values = new ContentValues();
+        values.put(PetEntry.COLUMN_PET_NAME, "Felix");
+        provider.update(uri, values, null, null);
+
+        assertEquals(1, provider.getRowCache().size());
+        assertEquals("Felix", readPet(uri));
+        assertEquals("Garfield", readPet(other));
+    }
+
+    @Test
+    public void deleteOfOnePetDropsItFromCache() {
+        Uri uri = provider.insert(PetEntry.CONTENT_URI, pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4));
+        Uri other = provider.insert(PetEntry.CONTENT_URI, pet("Garfield", "Tabby", PetEntry.GENDER_MALE, 7));
+        readPet(uri);
+        readPet(other);
+
+        provider.delete(uri, null, null);
+
+        assertEquals(1, provider.getRowCache().size());
+        assertNull(readPet(uri));
+    }
+
+    @Test
+    public void deleteOfListDropsEveryPetFromCache() {
+        Uri uri = provider.insert(PetEntry.CONTENT_URI, pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4));
+        Uri other = provider.insert(PetEntry.CONTENT_URI, pet("Garfield", "Tabby", PetEntry.GENDER_MALE, 7));
+        readPet(uri);
+        readPet(other);
+
+        provider.delete(PetEntry.CONTENT_URI, PetEntry.COLUMN_PET_NAME + "=?", new String[]{"Tommy"});
+
+        assertEquals(0, provider.getRowCache().size());
+        assertNull(readPet(uri));
+        assertEquals("Garfield", readPet(other));
+    }
+
+    @Test
+    public void cachedPetIsReadWithRequestedProjection() {
+        Uri uri = provider.insert(PetEntry.CONTENT_URI, pet("Tommy", "Pomeranian", PetEntry.GENDER_MALE, 4));
+        readPet(uri);
+        String[] projection = {PetEntry.COLUMN_PET_BREED, PetEntry._ID};
+
+        Cursor cursor = provider.query(uri, projection, null, null, null);
+        try {
+            assertEquals(Arrays.asList(projection), Arrays.asList(cursor.getColumnNames()));
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Pomeranian", cursor.getString(0));
+            assertEquals(ContentUris.parseId(uri), cursor.getLong(1));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(1, provider.getRowCache().getHitCount());
+    }
+
+    /**
+     * Returns the name of the pet of the given uri, or null if there is no such pet.
+     */
+    private String readPet(Uri uri) {
+        Cursor cursor = provider.query(uri, new String[]{PetEntry.COLUMN_PET_NAME}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private List<Long> searchIds(String text, int offset, int limit) {
+        Cursor cursor = provider.query(PetEntry.buildSearchUri(text, offset, limit),
+                new String[]{PetEntry._ID}, null, null, null);
+        try {
+            List<Long> ids = new ArrayList<>();
+            while (cursor.moveToNext())
+                ids.add(cursor.getLong(0));
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues pet(String name, String breed, int gender, int weight) {
+        ContentValues values = new ContentValues();
+        values.put(PetEntry.COLUMN_PET_NAME, name);
+        values.put(PetEntry.COLUMN_PET_BREED, breed);
+        values.put(PetEntry.COLUMN_PET_GENDER, gender);
+        values.put(PetEntry.COLUMN_PET_WEIGHT, weight);
+        return values;
+    }
+
+    /**
+     * Returns every pet as "id|name|breed|gender|weight", in ID order.
+     */
+    private List<String> readPets() {
+        Cursor cursor = provider.query(PetEntry.CONTENT_URI, PetRowCache.COLUMNS, null, null, PetEntry._ID);
+        try {
+            List<String> pets = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                StringBuilder pet = new StringBuilder();
+                for (int column = 0; column < cursor.getColumnCount(); column++) {
+                    if (column != 0)
+                        pet.append('|');
+                    if (!cursor.isNull(column))
+                        pet.append(cursor.getString(column));
+                }
+                pets.add(pet.toString());
+            }
+            return pets;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.android.pets.data;
+
+import android.database.Cursor;
+
+import com.example.android.pets.data.PetContract.PetEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the limits, the invalidation and the projections of {@link PetRowCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetRowCacheTest {
+
+    /** Size of a row made by {@link #row(long)}: the overhead and two 5 character strings */
+    private static final long ROW_BYTES = 128 + 2 * (5 + 5);
+
+    @Test
+    public void entryLimitEvictsLeastRecentlyUsedPet() {
+        PetRowCache cache = new PetRowCache(2, Long.MAX_VALUE);
+        cache.put(1, row(1), cache.getVersion());
+        cache.put(2, row(2), cache.getVersion());
+        close(cache.get(1, null));
+        cache.put(3, row(3), cache.getVersion());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(2, null));
+        assertNotNull(cache.get(1, null));
+        assertNotNull(cache.get(3, null));
+    }
+
+    @Test
+    public void byteLimitEvictsPets() {
+        PetRowCache cache = new PetRowCache(100, 2 * ROW_BYTES);
+        cache.put(1, row(1), cache.getVersion());
+        cache.put(2, row(2), cache.getVersion());
+        assertEquals(2 * ROW_BYTES, cache.sizeInBytes());
+
+        cache.put(3, row(3), cache.getVersion());
+
+        assertEquals(2, cache.size());
+        assertEquals(2 * ROW_BYTES, cache.sizeInBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(1, null));
+    }
+
+    @Test
+    public void rowReadBeforeInvalidationIsRefused() {
+        PetRowCache cache = new PetRowCache(10, Long.MAX_VALUE);
+        long readVersion = cache.getVersion();
+        // A writer commits a change between the read of the row and its put
+        cache.invalidate(1);
+        cache.put(1, row(1), readVersion);
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1, null));
+    }
+
+    @Test
+    public void rowReadBeforeClearIsRefused() {
+        PetRowCache cache = new PetRowCache(10, Long.MAX_VALUE);
+        long readVersion = cache.getVersion();
+        cache.clear();
+        cache.put(1, row(1), readVersion);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateDropsOnlyThatPet() {
+        PetRowCache cache = new PetRowCache(10, Long.MAX_VALUE);
+        cache.put(1, row(1), cache.getVersion());
+        cache.put(2, row(2), cache.getVersion());
+
+        cache.invalidate(1);
+
+        assertEquals(1, cache.size());
+        assertEquals(ROW_BYTES, cache.sizeInBytes());
+        assertNull(cache.get(1, null));
+        assertNotNull(cache.get(2, null));
+    }
+
+    @Test
+    public void hitReturnsRequestedProjection() {
+        PetRowCache cache = new PetRowCache(10, Long.MAX_VALUE);
+        cache.put(1, row(1), cache.getVersion());
+        String[] projection = {PetEntry.COLUMN_PET_WEIGHT, PetEntry.COLUMN_PET_NAME};
+
+        Cursor cursor = cache.get(1, projection);
+        try {
+            assertEquals(Arrays.asList(projection), Arrays.asList(cursor.getColumnNames()));
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(4, cursor.getInt(0));
+            assertEquals("Pet 1", cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void projectionOfOtherColumnsIsAMiss() {
+        PetRowCache cache = new PetRowCache(10, Long.MAX_VALUE);
+        cache.put(1, row(1), cache.getVersion());
+
+        assertNull(cache.get(1, new String[]{"count(*)"}));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private static Object[] row(long id) {
+        return new Object[]{id, "Pet " + id, "Tabby", (long) PetEntry.GENDER_MALE, 4L};
+    }
+
+    private static void close(Cursor cursor) {
+        cursor.close();
+    }
+}
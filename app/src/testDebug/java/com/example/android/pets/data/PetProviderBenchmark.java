@@ -0,0 +1,74 @@
+package com.example.android.pets.data;
+
+import android.content.Context;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the benchmarks of {@link PetBenchmark} on the JVM, against the SQLite of Robolectric, so
+ * they can run on any machine and be compared between commits. The results are written as JSON
+ * to the directory given by the {@code pets.benchmark.dir} system property.
+ * <p>
+ * This takes minutes, so it is left out of the unit tests and only runs with
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PetProviderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final String RESULTS_FILE_NAME = "pets-benchmark-jvm.json";
+
+    @Test
+    public void benchmarkDataLayer() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        PetProvider provider = PetBenchmark.createProvider(context);
+        JSONObject report;
+        try {
+            report = new JvmBenchmark(provider).run(PetBenchmark.TABLE_SIZES);
+        } finally {
+            PetBenchmark.releaseProvider(context, provider);
+        }
+
+        File directory = new File(System.getProperty("pets.benchmark.dir", "build/reports/benchmarks"));
+        assertTrue("Cannot create " + directory, directory.isDirectory() || directory.mkdirs());
+        PetBenchmark.write(report, new File(directory, RESULTS_FILE_NAME));
+    }
+
+    /**
+     * Counts allocations with the thread bean of the JVM, android.os.Debug does not count them
+     * outside of the Android runtime.
+     */
+    private static class JvmBenchmark extends PetBenchmark {
+
+        private final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private long allocatedAtStart;
+
+        JvmBenchmark(PetProvider provider) {
+            super(provider, WARMUP_ROUNDS, MEASURED_ROUNDS);
+        }
+
+        @Override
+        protected void startAllocationCounting() {
+            allocatedAtStart = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        @Override
+        protected long stopAllocationCounting() {
+            return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedAtStart;
+        }
+    }
+}